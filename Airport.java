@@ -2,14 +2,28 @@ import java.util.Objects;
 
 public class Airport implements AirportInterface{
     private String name;
+    private final int id; // dense id given by the reader that made it, -1 if none
     public Airport(String name) {
+        this(name, -1);
+    }
+
+    /**
+     * Makes an airport with a dense id: readers number the airports 0, 1, 2... in the order they
+     * list them, so the id is also the airport's index in the reader's airport list
+     */
+    public Airport(String name, int id) {
         this.name = name;
+        this.id = id;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getId() {
+        return id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -17,6 +31,11 @@ public class Airport implements AirportInterface{
         Airport airport = (Airport) o;
         return name.equals(airport.name);
     }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
     
     public String toString() {
       return name;
@@ -66,6 +66,9 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 			case 'F': // [F]ind shortest path between two destinations
 				getPrice();
 				break;
+			case 'B': // [B]est routes with a limited number of layovers
+				getLayoverLimitedRoutes();
+				break;
 			case 'Q': // [Q]uit
 				// Prints quit message and quits
 				hr();
@@ -97,6 +100,7 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 		System.out.println("    [L]oad data of flights from file");
 		System.out.println("    [G]et flight dataset statistics");
 		System.out.println("    [F]ind shortest path between two destinations");
+		System.out.println("    [B]est routes with a limited number of layovers");
 		System.out.println("    [Q]uit");
 
 		// read in user's choice, and trim away any leading or trailing whitespace
@@ -143,13 +147,14 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 			System.out.println("    [3]: Get the maximum cost flight");
 			System.out.println("    [4]: Get the flight with lowest distance traveled");
 			System.out.println("    [5]: Get the flight with highest distance traveled");
+			System.out.println("    [6]: Get performance statistics");
 			System.out.println("Choose option: ");
 			String input = userInput.nextLine().trim();
 			try {
 				// Checks to see if user input is a integer
 				output = Integer.parseInt(input);
-				// Checks to see if number is either 1,2,3,4, or 5
-				if (output > 5 || output <= 0) {
+				// Checks to see if number is either 1,2,3,4,5, or 6
+				if (output > 6 || output <= 0) {
 					System.out.println("Valid option not given");
 				} else {
 					break;
@@ -201,6 +206,10 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 				getMaximumDistanceFlight();
 				break;
 
+			case 6: // User chose [6] Get performance statistics
+				getPerformanceStatistics();
+				break;
+
 			// Case when user does not choose a valid option
 			default:
 				System.out.println("Invalid option entered");
@@ -318,6 +327,28 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 
 	}
 
+	/**
+	 * Displays the latency and search work of the route queries and the time taken
+	 * by the load phases, as recorded by the backend. Metrics are off by default, so
+	 * if they are the user is asked whether to turn them on. This method is called
+	 * if user chose [6] on the get statistics prompt
+	 */
+	@Override
+	public void getPerformanceStatistics() {
+		PerformanceMetrics.Snapshot stats = backend.getPerformanceStatistics();
+		System.out.print(stats);
+		if (!stats.enabled) {
+			// Recording has a small cost, so it is only turned on when asked for
+			System.out.println("Performance statistics are not being recorded. Turn them on? (Y/N)");
+			String input = userInput.nextLine().trim();
+			if (input.equalsIgnoreCase("Y")) {
+				backend.setPerformanceMetrics(true);
+				System.out.println("Route queries and loads will be measured from now on");
+			}
+		}
+		System.out.println();
+	}
+
 	/**
 	 * If the user selected [L] on the main menu prompt, then this method would be
 	 * called. The user would be asked for the departure and destination airports
@@ -352,7 +383,7 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 				System.out.println("To minimize the number of miles traveled and the "
 						+ "price of your flight, the most optimal route to take" + " is: ");
 			} else if (optimalChosen == 2) {
-				if(results.get(1) == null) {
+				if(results.size() < 2) {
 					System.out.println("There is no second most optimal route");
 					break;
 				}
@@ -360,7 +391,7 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 			}
 
 			else if (optimalChosen == 3) {
-				if(results.get(2) == null) {
+				if(results.size() < 3) {
 					System.out.println("There is no third most optimal route");
 					break;
 				}
@@ -432,6 +463,60 @@ public class AirportFrontendFD implements AirportFrontendInterface {
 		}
 	}
 
+	/**
+	 * Finds the best route between two destinations for every number of layovers up
+	 * to the most the user accepts, and shows each with its price, miles and
+	 * layovers. This is if the user chose the [B] option in the main menu prompt
+	 */
+	@Override
+	public void getLayoverLimitedRoutes() {
+		String departure = chooseAirportDeparture();
+		String destination = chooseAirportDestination();
+		int maxLayovers;
+		while (true) {
+			// Gets the most layovers the user accepts
+			System.out.println("Please input the most layovers you would accept:");
+			try {
+				maxLayovers = Integer.parseInt(userInput.nextLine().trim());
+				if (maxLayovers >= 0) {
+					break;
+				}
+				System.out.println("Valid integer not given");
+			} catch (NumberFormatException e) {
+				System.out.println("Integer was not given");
+			}
+		}
+
+		List<Path> results;
+		try {
+			results = backend.getShortestPathsByLayovers(departure, destination, maxLayovers);
+		} catch (Exception e) {
+			System.out.println("Could not find routes: " + e.getMessage());
+			return;
+		}
+		for (int layovers = 0; layovers < results.size(); layovers++) {
+			Path path = results.get(layovers);
+			System.out.println("\nWith at most " + layovers + " layover(s):");
+			if (path == null) {
+				System.out.println("No route");
+				continue;
+			}
+			if (layovers > 0 && path == results.get(layovers - 1)) {
+				System.out.println("Same route as with fewer layovers");
+				continue;
+			}
+			System.out.println(String.join(" -> ", path.nodeList));
+			System.out.println("The price of the flight is: " + backend.getFinalPrice(path));
+			getMilesTraveled(path);
+			getNumLayovers(path);
+		}
+		if (results.size() <= maxLayovers) {
+			System.out.println("\nMore layovers than " + (results.size() - 1)
+					+ " would need an airport twice, so the routes above are the cheapest for any limit");
+		}
+		System.out.println();
+	}
+
 	/**
 	 * Gets the user input on which flight path to see, indicated by a number from 1
 	 * through 4
@@ -11,6 +11,7 @@ public interface AirportFrontendInterface {
 
   public void getStats();
   public void getPrice();
+  public void getLayoverLimitedRoutes();
   public void getMilesTraveled(Path p);
   public void getNumLayovers(Path a);
   public void getAirplaneLocations();
@@ -18,6 +19,7 @@ public interface AirportFrontendInterface {
   public void getMaximumCostFlight();
   public void getMinimumDistanceFlight();
   public void getMaximumDistanceFlight();
+  public void getPerformanceStatistics();
   
   public void quit();
 
@@ -0,0 +1,145 @@
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest path cost and predecessor between every pair of airports of a FlightNetwork. One
+ * Dijkstra search per origin fills one row of each matrix; the rows are independent, so they are
+ * computed in parallel on the fork-join pool. Afterward a cost is one array read and a path is a
+ * walk back along the predecessor row of its origin.
+ */
+public class AllPairsTable {
+
+	/**
+	 * Most airports a table can be built for: both matrices hold n * n entries, which has to fit in
+	 * one Java array
+	 */
+	public static final int MAX_AIRPORTS = (int) Math.sqrt(Integer.MAX_VALUE - 8);
+
+	private final FlightNetwork net; // the network the table was built from
+	private final int n; // number of airports
+	final double[] cost; // cost from origin s to airport t at s * n + t, infinity if unreachable
+	final int[] predEdge; // last edge on the path from s to t at s * n + t, -1 if none
+	private final long buildNanos; // time the constructor took
+
+	/**
+	 * Computes the table. Needs 12 bytes per airport pair
+	 * @param net - the network to compute it for
+	 * @throws IllegalArgumentException - if it has more than MAX_AIRPORTS airports
+	 */
+	public AllPairsTable(FlightNetwork net) {
+		long start = System.nanoTime();
+		if (net.getNodeCount() > MAX_AIRPORTS) {
+			throw new IllegalArgumentException("An all-pairs table holds at most " + MAX_AIRPORTS + " airports, not "
+					+ net.getNodeCount());
+		}
+		this.net = net;
+		this.n = net.getNodeCount();
+		this.cost = new double[n * n];
+		this.predEdge = new int[n * n];
+		IntStream.range(0, n).parallel().forEach(this::fillRow);
+		this.buildNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Wraps matrices computed earlier for the same network, as read back from a BinarySnapshot
+	 */
+	AllPairsTable(FlightNetwork net, double[] cost, int[] predEdge, long buildNanos) {
+		this.net = net;
+		this.n = net.getNodeCount();
+		this.cost = cost;
+		this.predEdge = predEdge;
+		this.buildNanos = buildNanos;
+	}
+
+	/**
+	 * Runs the search from one origin and copies the result into its row
+	 */
+	private void fillRow(int source) {
+		SearchScratch scratch = SearchScratch.local(); //The scratch of whichever thread runs the row
+		scratch.reset(n);
+		scratch.relax(source, 0, -1);
+		while (!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			double d = scratch.dist[u];
+			for (int e = net.offsets[u]; e < net.offsets[u + 1]; e++)
+				scratch.relax(net.targets[e], d + net.weights[e], e);
+		}
+		int row = source * n;
+		for (int v = 0; v < n; v++) {
+			cost[row + v] = scratch.distance(v);
+			predEdge[row + v] = scratch.predecessor(v);
+		}
+	}
+
+	/**
+	 * Returns the network the table answers for
+	 */
+	public FlightNetwork getNetwork() {
+		return net;
+	}
+
+	/**
+	 * Returns how long the table took to build, in milliseconds
+	 */
+	public double getBuildMillis() {
+		return buildNanos / 1e6;
+	}
+
+	/**
+	 * Returns how many bytes the two matrices take
+	 */
+	public long footprint() {
+		return 12L * n * n;
+	}
+
+	/**
+	 * Returns the cost of the shortest path between airports
+	 */
+	public double shortestPathCost(String start, String end) {
+		int s = net.indexOf(start);
+		int t = net.indexOf(end);
+		if (s < 0 || t < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		double c = cost[s * n + t];
+		if (c == Double.POSITIVE_INFINITY) throw new NoSuchElementException("There is not path for the start and end");
+		return c;
+	}
+
+	/**
+	 * Returns the shortest path between airports with its cost
+	 */
+	public Path shortestPath(String start, String end) {
+		double c = shortestPathCost(start, end);
+		int s = net.indexOf(start);
+		int row = s * n;
+		LinkedList<String> path = new LinkedList<String>();
+		LinkedList<FlightInterface> flights = new LinkedList<FlightInterface>();
+		int v = net.indexOf(end);
+		path.addFirst(net.nameOf(v));
+		while (predEdge[row + v] >= 0) {
+			int e = predEdge[row + v];
+			flights.addFirst(net.flightOf(e));
+			v = net.origins[e];
+			path.addFirst(net.nameOf(v));
+		}
+		return new Path(path, c, flights);
+	}
+
+	/**
+	 * Returns a list of strings for the shortest path between airports
+	 */
+	public List<String> shortestPathData(String start, String end) {
+		return shortestPath(start, end).nodeList;
+	}
+
+	/**
+	 * Returns a one line description of the table for reports
+	 */
+	public String summary() {
+		return String.format("all-pairs table: %d airports, built in %.1f ms, %.1f KB", n, getBuildMillis(),
+				footprint() / 1024.0);
+	}
+}
@@ -1,19 +1,49 @@
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 public class BackendBD implements BackendInterface {
 
   private GraphADT<String, FlightInterface> graph; // graph that this class uses
   private FlightReaderInterface reader; // reader that this class uses
-  private List<AirportInterface> nodeList; // list of airport nodes to insert
-  private List<FlightInterface> edgeList; // list of edges to insert
+  private final List<AirportInterface> airports = new ArrayList<AirportInterface>(); // airports in the graph
+  private final LinkedHashSet<FlightInterface> flights = new LinkedHashSet<FlightInterface>(); // flights in
+                                                                                         // the graph
+  private final FlightStats stats = new FlightStats(); // price and miles index of the flights
+  private int routeCount = 3; // number of routes getShortestPaths returns
+  private FlightNetwork loadedNetwork; // copy of a graph that can't make one itself, see getNetwork
+  private final RouteQueryEngine engine = new RouteQueryEngine(); // answers the route queries
+  private boolean snapshotCaching = false; // whether loading a csv writes a binary snapshot of it
+  private volatile RouteCache routeCache = new RouteCache(1024, 0); // recent route results, or null
+  // changes made to the graph since the last snapshot, told to the route cache once it is published
+  private final List<Consumer<RouteCache>> cacheChanges = new ArrayList<Consumer<RouteCache>>();
+  private boolean bulkLoading = false; // true while loaded flights are inserted, the cache is cleared after
+  private long minConnectionSeconds = 45 * 60; // minimum connection time of the timetable
+  private Timetable timetable; // timetable of the current snapshot, made on first use
+  private final Object timetableLock = new Object(); // guards timetable and minConnectionSeconds
 
   public BackendBD(GraphADT<String, FlightInterface> graph, FlightReaderInterface reader) {
     this.graph = graph; // initialize graph
     this.reader = reader; // initialize flight reader
   }
 
+  /**
+   * Sets how many routes getShortestPaths(a, b) looks for
+   * 
+   * @param routeCount - the number of routes, at least 1
+   */
+  public void setRouteCount(int routeCount) {
+    if (routeCount < 1) {
+      throw new IllegalArgumentException("At least one route has to be requested");
+    }
+    this.routeCount = routeCount;
+  }
+
   /**
    * This method passes in a path of flights and gets the total distance traveled
    * 
@@ -22,68 +52,677 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public int getDistanceTraveled(Path path) {
+    RouteCache cache = routeCache;
+    int cached = cache == null ? -1 : cache.milesOf(path);
+    if (cached >= 0) {
+      return cached;
+    }
+    return milesOf(engine.snapshot().network, path); // read every hop from the same snapshot
+  }
+
+  private int milesOf(FlightNetwork network, Path path) {
     int total = 0;
     for (int i = 0; i < path.nodeList.size() - 1; i++) { // traverse the path and sum the miles from
                                                          // the edges to each node
-      FlightInterface edge = graph.getEdge(path.nodeList.get(i), path.nodeList.get(i + 1));
+      FlightInterface edge = flightOf(network, path, i);
       total += edge.getMiles(); // sum the miles data from each edge
     }
     return total;
   }
 
   /**
-   * This method gets the top three shortest paths between two airports
+   * This method gets the top shortest paths between two airports (three unless changed with
+   * setRouteCount)
    * 
    * @author Alex Martens
    * @param - AirportInterface a: origin - AirportInterface b: destination
-   * @return - A list of three paths with shortest path being at index 0 and 3rd shortest at index 2
+   * @return - A list of paths with shortest path being at index 0, shorter if fewer paths exist
    */
   @Override
   public List<Path> getShortestPaths(String a, String b) {
-    ArrayList<Path> paths = new ArrayList<Path>();
-    List<String> path = graph.shortestPathData(a, b);
-    paths.add(new Path(path));// Adds the shortest path to paths
-    double lowestCost = Double.MAX_VALUE;
-    List<String> lowestPath = null; // Makes the path with the lowest cost
-    for (int i = 0; i < path.size() - 1; i++) { // Finds the second shortest path
-      FlightInterface edge = graph.getEdge(path.get(i), path.get(i + 1));
-      graph.removeEdge(edge.getOriginAirport(), edge.getDestinationAirport());
-      if (graph.shortestPathCost(a, b) < lowestCost) {
-        lowestCost = graph.shortestPathCost(a, b);
-        lowestPath = graph.shortestPathData(a, b);
+    return getShortestPaths(a, b, routeCount);
+  }
+
+  /**
+   * This method gets the k shortest loopless paths between two airports with Yen's algorithm. Runs
+   * on the current route snapshot, so it is safe to call from many threads at once
+   * 
+   * @param - String a: origin - String b: destination - int k: number of paths wanted
+   * @return - up to k paths with their costs, cheapest first
+   */
+  @Override
+  public List<Path> getShortestPaths(String a, String b, int k) {
+    return getShortestPaths(a, b, k, CostModel.VALUE);
+  }
+
+  /**
+   * This method gets the k loopless paths between two airports that cost least under a cost model
+   * (cheapest, shortest, fewest flights or a blend, see CostModel), without changing the graph.
+   * Queries with different models can run at the same time
+   * 
+   * @param - String a: origin - String b: destination - int k: number of paths wanted - CostModel
+   *          model: what the paths minimize
+   * @return - up to k paths with their costs under the model, cheapest first
+   */
+  public List<Path> getShortestPaths(String a, String b, int k, CostModel model) {
+    PerformanceMetrics.Probe probe = PerformanceMetrics.start(); // null unless metrics are on
+    boolean hit = false;
+    boolean found = false;
+    try {
+      RouteCache cache = routeCache;
+      if (cache == null) {
+        List<Path> paths = engine.shortestPaths(a, b, k, model);
+        found = true;
+        return paths;
       }
-      graph.insertEdge(edge.getOriginAirport(), edge.getDestinationAirport(), edge);
-    }
-    if (lowestPath == null) { // If there is no second path, return paths
+      RouteCache.Key key = new RouteCache.Key(a, b, k, model);
+      List<Path> paths = cache.get(key);
+      hit = paths != null;
+      if (paths == null) {
+        long generation = cache.generation(); // before the search, so a change during it isn't cached
+        paths = engine.shortestPaths(a, b, k, model);
+        store(cache, key, paths, generation);
+      }
+      found = true;
       return paths;
+    } finally {
+      PerformanceMetrics.finish(probe, PerformanceMetrics.Query.BACKEND_SHORTEST_PATHS, hit, found);
+    }
+  }
+
+  /**
+   * Caches routes with their prices and miles
+   */
+  private void store(RouteCache cache, RouteCache.Key key, List<Path> paths, long generation) {
+    FlightNetwork network = engine.snapshot().network;
+    double[] prices = new double[paths.size()];
+    int[] miles = new int[paths.size()];
+    for (int i = 0; i < paths.size(); i++) {
+      prices[i] = priceOf(network, paths.get(i));
+      miles[i] = milesOf(network, paths.get(i));
+    }
+    cache.put(key, paths, prices, miles, generation);
+  }
+
+  /**
+   * This method gets the cheapest routes from one airport to every airport with a single search
+   * 
+   * @param - String a: origin
+   * @return - the cost of and path to every airport (see ShortestPathTree)
+   */
+  @Override
+  public ShortestPathTree getRoutesFrom(String a) {
+    return getRoutesFrom(a, CostModel.VALUE);
+  }
+
+  /**
+   * Same as getRoutesFrom(a), with the routes minimizing the cost under a cost model
+   */
+  public ShortestPathTree getRoutesFrom(String a, CostModel model) {
+    return engine.snapshot().network.shortestPathTree(a, model);
+  }
+
+  /**
+   * This method gets the cost of the cheapest route from every origin to every destination. Each
+   * origin is searched once for all destinations, and origins are searched in parallel
+   * 
+   * @param - List origins: origin airports - List destinations: destination airports
+   * @return - the cost from origin i to destination j at [i][j], infinity if there is no route
+   */
+  @Override
+  public double[][] getCostMatrix(List<String> origins, List<String> destinations) {
+    return routeMatrix(CostModel.VALUE).compute(origins, destinations);
+  }
+
+  /**
+   * Same as getCostMatrix, but hands each row to a sink as soon as it is computed instead of
+   * holding the whole matrix, for matrices too large to keep in memory
+   * 
+   * @param - List origins: origin airports - List destinations: destination airports - CostModel
+   *          model: what the costs are - RowSink sink: receives the rows, one at a time
+   */
+  public void streamCostMatrix(List<String> origins, List<String> destinations, CostModel model,
+      RouteMatrix.RowSink sink) {
+    routeMatrix(model).stream(origins, destinations, sink);
+  }
+
+  /**
+   * Returns a matrix builder for the current snapshot, reading its all-pairs table when it has one
+   */
+  private RouteMatrix routeMatrix(CostModel model) {
+    RouteQueryEngine.Snapshot snap = engine.snapshot();
+    return new RouteMatrix(snap.network, model, snap.table);
+  }
+
+  /**
+   * This method gets the cheapest route between two airports for every layover budget up to a
+   * limit, all in one layered search (see HopBoundedSearch)
+   * 
+   * @param - String a: origin - String b: destination - int maxLayovers: the most layovers,
+   *          clamped to the airports less two as no route needs more
+   * @return - entry i is the cheapest path with at most i layovers, null when there is none
+   */
+  @Override
+  public List<Path> getShortestPathsByLayovers(String a, String b, int maxLayovers) {
+    return new HopBoundedSearch(engine.snapshot().network).find(a, b, maxLayovers);
+  }
+
+  /**
+   * This method gets every Pareto-optimal route between two airports over price, miles and
+   * layovers: the routes that no other route beats on all three (see ParetoSearch)
+   * 
+   * @param - String a: origin - String b: destination - int maxLayovers: most layovers, negative for
+   *          no bound - double maxPrice: highest total price, infinity for no bound
+   * @return - the routes with their totals, cheapest first
+   */
+  public List<ParetoSearch.ParetoPath> getParetoRoutes(String a, String b, int maxLayovers,
+      double maxPrice) {
+    return new ParetoSearch(engine.snapshot().network).find(a, b, maxLayovers, maxPrice);
+  }
+
+  /**
+   * This method gets the journey between two airports that arrives first, over the flights that
+   * have departure and arrival times (see Timetable). Connections need the minimum connection time
+   * 
+   * @param - String a: origin - String b: destination - long departAfter: earliest departure, in
+   *          seconds since the epoch
+   * @return - the journey with its departure, arrival and total price
+   */
+  public Timetable.Journey getEarliestArrival(String a, String b, long departAfter) {
+    return getTimetable().earliestArrival(a, b, departAfter);
+  }
+
+  /**
+   * This method gets the best journey between two airports for every departure in a time window:
+   * each one arrives first of the journeys leaving at its time or later
+   * 
+   * @param - String a: origin - String b: destination - long from, long to: the departure window,
+   *          in seconds since the epoch
+   * @return - the journeys by departure time, later ones arriving later
+   */
+  public List<Timetable.Journey> getDepartures(String a, String b, long from, long to) {
+    return getTimetable().profile(a, b, from, to);
+  }
+
+  /**
+   * Sets the time needed at an airport between arriving and taking another flight
+   * 
+   * @param seconds - the minimum connection time, at least 0
+   */
+  public void setMinimumConnectionTime(long seconds) {
+    if (seconds < 0) {
+      throw new IllegalArgumentException("The connection time can't be negative");
+    }
+    synchronized (timetableLock) {
+      minConnectionSeconds = seconds;
+      timetable = null;
+    }
+  }
+
+  /**
+   * Returns the timetable of the current route snapshot, building it the first time it is asked for
+   */
+  public Timetable getTimetable() {
+    FlightNetwork network = engine.snapshot().network;
+    synchronized (timetableLock) {
+      if (timetable == null || timetable.getNetwork() != network) {
+        timetable = new Timetable(network, minConnectionSeconds);
+      }
+      return timetable;
+    }
+  }
+
+  /**
+   * This method gets the cheapest path between two airports. It is read from the all-pairs table
+   * when there is one, else found with the contraction hierarchy when that is turned on, else
+   * searched for in the current route snapshot
+   * 
+   * @param - String a: origin - String b: destination
+   * @return - the cheapest path with its cost
+   */
+  @Override
+  public Path getShortestPath(String a, String b) {
+    return getShortestPath(a, b, CostModel.VALUE);
+  }
+
+  /**
+   * This method gets the path between two airports that costs least under a cost model. Only
+   * CostModel.VALUE uses the all-pairs table and the contraction hierarchy, which are built for it
+   * 
+   * @param - String a: origin - String b: destination - CostModel model: what the path minimizes
+   * @return - the cheapest path with its cost under the model
+   */
+  public Path getShortestPath(String a, String b, CostModel model) {
+    RouteCache cache = routeCache;
+    if (cache == null) {
+      return engine.shortestPath(a, b, model);
+    }
+    // the cheapest route is cached the same way as a list of one route
+    RouteCache.Key key = new RouteCache.Key(a, b, 1, model);
+    List<Path> paths = cache.get(key);
+    if (paths == null) {
+      long generation = cache.generation();
+      paths = new ArrayList<Path>();
+      paths.add(engine.shortestPath(a, b, model));
+      store(cache, key, paths, generation);
+    }
+    return paths.get(0);
+  }
+
+  /**
+   * This method gets the cost of the cheapest path between two airports, from the all-pairs table
+   * when there is one
+   * 
+   * @param - String a: origin - String b: destination
+   * @return - the total value() of the cheapest path
+   */
+  @Override
+  public double getShortestPathCost(String a, String b) {
+    return engine.shortestPathCost(a, b);
+  }
+
+  /**
+   * Sets the largest number of airports for which the all-pairs route table is precomputed for
+   * every snapshot. Above it routes are searched on demand. 0 turns the table off, and limits above
+   * AllPairsTable.MAX_AIRPORTS are lowered to it
+   * 
+   * @param maxAirports - the airport count limit
+   */
+  public void setAllPairsThreshold(int maxAirports) {
+    engine.setAllPairsThreshold(maxAirports);
+  }
+
+  /**
+   * Returns the all-pairs route table of the current snapshot, null when there is none
+   */
+  public AllPairsTable getAllPairsTable() {
+    return engine.snapshot().table;
+  }
+
+  /**
+   * Sets how single shortest paths are searched for, in the graph itself and in the route snapshot
+   * (see SearchMode). The backend's route queries run on the snapshot, which has no landmark index:
+   * under ALT they search with plain Dijkstra, and only the graph's own queries use ALT (building
+   * its index on the first one)
+   * 
+   * @param mode - the search to use
+   * @return - true if the backend's route queries search with the mode, false for ALT
+   */
+  public boolean setSearchMode(SearchMode mode) {
+    engine.setSearchMode(mode);
+    if (graph instanceof Graph) {
+      ((Graph<?, ?>) graph).setSearchMode(mode);
+    }
+    return mode != SearchMode.ALT;
+  }
+
+  /**
+   * Turns answering single routes with a contraction hierarchy on or off. When on, a hierarchy is
+   * built for every snapshot, starting with the current one
+   * 
+   * @param useHierarchy - true to use the hierarchy
+   */
+  public void setContractionHierarchy(boolean useHierarchy) {
+    engine.setUseHierarchy(useHierarchy);
+  }
+
+  /**
+   * Returns the contraction hierarchy of the current snapshot, null when there is none
+   */
+  public ContractionHierarchy getHierarchy() {
+    return engine.snapshot().hierarchy;
+  }
+
+  /**
+   * Returns the engine route queries are answered by
+   */
+  public RouteQueryEngine getQueryEngine() {
+    return engine;
+  }
+
+  /**
+   * Returns the index of flight prices and miles: percentiles, sorted columns, ranges of prices and
+   * per airport degrees and fares
+   */
+  public FlightStats getStatistics() {
+    return stats;
+  }
+
+  /**
+   * Replaces the route cache with an empty one of the given size, or turns caching off
+   * 
+   * @param maxEntries - the most queries kept, 0 to stop caching
+   * @param ttlMillis - how long a cached result can be used, 0 for as long as the flights it was
+   *                  found from don't change
+   */
+  public void setRouteCache(int maxEntries, long ttlMillis) {
+    routeCache = maxEntries == 0 ? null : new RouteCache(maxEntries, ttlMillis);
+  }
+
+  /**
+   * Returns the route cache with its hit and miss counts, null when caching is off
+   */
+  public RouteCache getRouteCache() {
+    return routeCache;
+  }
+
+  /**
+   * This method gets the query and load metrics recorded so far (see PerformanceMetrics)
+   * 
+   * @return - the latency and search work of route queries and the time of the load phases
+   */
+  @Override
+  public PerformanceMetrics.Snapshot getPerformanceStatistics() {
+    return PerformanceMetrics.snapshot();
+  }
+
+  /**
+   * Turns recording query and load metrics on or off. They are off by default and cost next to
+   * nothing while off
+   * 
+   * @param enabled - true to record
+   */
+  @Override
+  public void setPerformanceMetrics(boolean enabled) {
+    PerformanceMetrics.setEnabled(enabled);
+  }
+
+  /**
+   * Adds a flight to the graph and publishes a new route snapshot with it. Queries running at the
+   * same time finish on the old snapshot
+   * 
+   * @param flight - the flight to add, its airports are added when missing
+   * @return - true if the graph took the flight
+   */
+  public synchronized boolean addFlight(FlightInterface flight) {
+    boolean added = insertFlight(flight);
+    publishChanges();
+    return added;
+  }
+
+  /**
+   * Removes the flights between two airports from the graph and publishes a new route snapshot
+   * 
+   * @param a - origin airport
+   * @param b - destination airport
+   * @return - true if there was a flight to remove
+   */
+  public synchronized boolean removeFlight(String a, String b) {
+    boolean removed = apply(FlightUpdate.removeAll(a, b));
+    publishChanges();
+    return removed;
+  }
+
+  /**
+   * Removes an airport and every flight to or from it from the graph and publishes a new route
+   * snapshot
+   * 
+   * @param airport - the airport code
+   * @return - true if the airport was in the graph
+   */
+  public synchronized boolean removeAirport(String airport) {
+    if (!graph.containsNode(airport)) {
+      return false;
+    }
+    for (Iterator<FlightInterface> i = flights.iterator(); i.hasNext();) {
+      FlightInterface f = i.next();
+      if (f.getOriginAirport().equals(airport) || f.getDestinationAirport().equals(airport)) {
+        i.remove();
+        stats.remove(f);
+      }
+    }
+    airports.removeIf(a -> a.toString().equals(airport));
+    graph.removeNode(airport);
+    cacheChanges.add(cache -> cache.airportRemoved(airport));
+    publishChanges();
+    return true;
+  }
+
+  /**
+   * Applies a batch of flight updates to the graph, then publishes one new route snapshot for the
+   * whole batch. The flight statistics follow every update; the route indexes of the snapshot
+   * (hierarchy, all-pairs table) are built for the new network before it is published, so queries
+   * keep using the old snapshot until then. Only the graph, the statistics and the route cache are
+   * updated in place: a batch that changes anything costs a full rebuild of the CSR network, plus
+   * the contraction hierarchy and the all-pairs table when they are turned on, however few flights
+   * it touches. A batch that changes nothing publishes nothing and costs no rebuild, so larger
+   * batches spread that cost over more updates
+   * 
+   * @param batch - the updates, applied in order
+   * @return - how many of them changed the graph
+   */
+  public synchronized int applyUpdates(List<FlightUpdate> batch) {
+    int applied = 0;
+    for (FlightUpdate update : batch) {
+      if (apply(update)) {
+        applied++;
+      }
     }
-    paths.add(new Path(lowestPath));
-    lowestCost = Double.MAX_VALUE;
-    lowestPath = null; // Resets the lowest path
-    for (int i = 0; i < paths.get(0).nodeList.size() - 1; i++) { // Finds the third shortest path by
-                                                                 // iterating through the first two
-                                                                 // and removing edges
-      FlightInterface edge1 =
-          graph.getEdge(paths.get(0).nodeList.get(i), paths.get(0).nodeList.get(i + 1));
-      graph.removeEdge(edge1.getOriginAirport(), edge1.getDestinationAirport());
-      for (int j = 0; j < paths.get(1).nodeList.size() - 1; j++) {
-        try {
-          FlightInterface edge2 = (FlightInterface) graph.getEdge(paths.get(1).nodeList.get(j),
-              paths.get(1).nodeList.get(j + 1));
-          graph.removeEdge(edge2.getOriginAirport(), edge2.getDestinationAirport());
-          if (graph.shortestPathCost(a, b) < lowestCost) {
-            lowestCost = graph.shortestPathCost(a, b);
-            lowestPath = graph.shortestPathData(a, b);
+    if (applied > 0) {
+      publishChanges();
+    }
+    return applied;
+  }
+
+  /**
+   * Applies one update to the graph and the statistics, without publishing it
+   * 
+   * @return - true if the graph changed
+   */
+  private boolean apply(FlightUpdate update) {
+    switch (update.kind) {
+      case ADD:
+        return insertFlight(update.flight());
+      case REMOVE:
+        if (update.isSingleFlight()) {
+          FlightInterface stored = storedFlight(update);
+          return stored != null && deleteFlight(stored);
+        }
+        if (!graph.containsEdge(update.origin, update.destination)) {
+          return false;
+        }
+        // only the flights out of the origin are looked at, not every flight
+        for (FlightInterface f : stats.flightsFrom(update.origin, Double.POSITIVE_INFINITY)) {
+          if (f.getDestinationAirport().equals(update.destination)) {
+            flights.remove(f);
+            stats.remove(f);
           }
-          graph.insertEdge(edge2.getOriginAirport(), edge2.getDestinationAirport(), edge2);
-        } catch (Exception e) {
+        }
+        cacheChanges.add(cache -> cache.flightRemoved(update.origin, update.destination));
+        return graph.removeEdge(update.origin, update.destination);
+      case REPRICE:
+        FlightInterface old = storedFlight(update);
+        if (old == null || !deleteFlight(old)) {
+          return false;
+        }
+        Flight named = old instanceof Flight ? (Flight) old : update.flight();
+        if (old instanceof ScheduledFlight) { // same departure and arrival, new price
+          ScheduledFlight scheduled = (ScheduledFlight) old;
+          insertFlight(new ScheduledFlight(named.getOrigin(), named.getDestination(), update.newPrice,
+              update.miles, scheduled.getDeparture(), scheduled.getArrival()));
+        } else {
+          insertFlight(new Flight(named.getOrigin(), named.getDestination(), update.newPrice, update.miles));
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Finds the stored flight a single-flight update names. Updates carry no times, so a
+   * ScheduledFlight (which never equals the plain Flight of the update) is found by its airports,
+   * price and miles; of several departures that match, the first one is taken
+   * 
+   * @return - the flight, null if there is none
+   */
+  private FlightInterface storedFlight(FlightUpdate update) {
+    Flight named = update.flight();
+    if (flights.contains(named)) {
+      return named;
+    }
+    // only the flights out of the origin that cost at most the price are looked at
+    for (FlightInterface f : stats.flightsFrom(update.origin, update.price)) {
+      if (f.getDestinationAirport().equals(update.destination)
+          && Double.compare(f.getPrice(), update.price) == 0
+          && Double.compare(f.getMiles(), update.miles) == 0) {
+        return f;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Inserts a flight and its airports into the graph and the statistics
+   * 
+   * @return - true if the flight was new
+   */
+  private boolean insertFlight(FlightInterface flight) {
+    return insertFlight(flight, -1, -1);
+  }
 
+  /**
+   * Inserts a flight into the graph and the statistics. When both node ids are given (see
+   * Graph.idsOf) its airports are already in the graph and no airport code is looked up
+   * 
+   * @param origin - node id of the origin in the Graph, -1 to go by airport code
+   * @param destination - node id of the destination in the Graph, -1 to go by airport code
+   * @return - true if the flight was new
+   */
+  private boolean insertFlight(FlightInterface flight, int origin, int destination) {
+    boolean byId = origin >= 0 && destination >= 0;
+    if (!byId) {
+      for (String airport : new String[] {flight.getOriginAirport(), flight.getDestinationAirport()}) {
+        if (graph.insertNode(airport)) {
+          airports.add(new Airport(airport));
         }
       }
-      graph.insertEdge(edge1.getOriginAirport(), edge1.getDestinationAirport(), edge1);
     }
-    paths.add(new Path(lowestPath)); // Adds the third shortest path
-    return paths; // this method is from Algorithm Engineer
+    if (!flights.add(flight)) {
+      return false;
+    }
+    if (byId) {
+      ((Graph<String, FlightInterface>) graph).insertEdgeById(origin, destination, flight);
+    } else {
+      graph.insertEdge(flight.getOriginAirport(), flight.getDestinationAirport(), flight);
+    }
+    if (!bulkLoading) {
+      cacheChanges.add(cache -> cache.flightAdded(flight));
+    }
+    stats.add(flight);
+    return true;
+  }
+
+  /**
+   * Removes one flight from the graph and the statistics
+   * 
+   * @return - true if it was there
+   */
+  private boolean deleteFlight(FlightInterface flight) {
+    if (!flights.remove(flight)) {
+      return false;
+    }
+    graph.removeFlight(flight.getOriginAirport(), flight.getDestinationAirport(), flight);
+    cacheChanges.add(cache -> cache.flightRemoved(flight.getOriginAirport(),
+        flight.getDestinationAirport()));
+    stats.remove(flight);
+    return true;
+  }
+
+  /**
+   * Publishes a new route snapshot made from the graph as it is now. Needed after the graph was
+   * changed directly instead of through this class; the route cache can't tell which routes such
+   * changes touched, so it is emptied
+   */
+  public synchronized void refreshSnapshot() {
+    publishChanges();
+    RouteCache cache = routeCache;
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Publishes a new route snapshot, then drops the cached routes the changes made since the last
+   * one can affect. Only after publishing, so no route found on the old snapshot is cached again
+   */
+  private void publishChanges() {
+    loadedNetwork = null;
+    engine.publish(getNetwork());
+    RouteCache cache = routeCache;
+    if (cache != null) {
+      for (Consumer<RouteCache> change : cacheChanges) {
+        change.accept(cache);
+      }
+    }
+    cacheChanges.clear();
+  }
+
+  /**
+   * Turns writing a binary snapshot next to every csv that is loaded on or off. loadData reads the
+   * snapshot instead of the csv as long as the csv hasn't changed since (see BinarySnapshot)
+   * 
+   * @param snapshotCaching - true to write snapshots
+   */
+  public void setSnapshotCaching(boolean snapshotCaching) {
+    this.snapshotCaching = snapshotCaching;
+  }
+
+  /**
+   * Writes the current route snapshot, with its all-pairs table if it has one, to a binary snapshot
+   * file
+   * 
+   * @param fileName - where to write it
+   */
+  public void saveSnapshot(String fileName) throws IOException {
+    RouteQueryEngine.Snapshot snap = engine.snapshot();
+    BinarySnapshot.write(fileName, snap.network,
+        snap.table != null && snap.table.getNetwork() == snap.network ? snap.table : null);
+  }
+
+  /**
+   * Writes the binary snapshot of a csv that was just loaded. It has to hold the flights of that
+   * file and nothing else, since a later load trusts it as the file's content. That is the route
+   * snapshot just published, with its all-pairs table, only when the graph held nothing else
+   * 
+   * @param fileName - where to write it
+   * @param parsed - the flights read from the csv
+   * @param onlyParsed - true if the graph held no other flights before the load
+   */
+  private void saveSnapshot(String fileName, List<FlightInterface> parsed, boolean onlyParsed)
+      throws IOException {
+    if (onlyParsed && engine.snapshot().network.getEdgeCount() == parsed.size()) {
+      saveSnapshot(fileName);
+      return;
+    }
+    LinkedHashSet<String> codes = new LinkedHashSet<String>();
+    for (FlightInterface f : parsed) {
+      codes.add(f.getOriginAirport());
+      codes.add(f.getDestinationAirport());
+    }
+    BinarySnapshot.write(fileName, new FlightNetwork(new ArrayList<String>(codes), parsed), null);
+  }
+
+  /**
+   * Returns a frozen copy of the graph for the routing code. Graphs that can't make one are rebuilt
+   * from the flights that were loaded, once per load
+   */
+  private FlightNetwork getNetwork() {
+    if (graph instanceof NetworkSource) {
+      return ((NetworkSource) graph).getNetwork();
+    }
+    if (loadedNetwork != null) {
+      return loadedNetwork;
+    }
+    List<AirportInterface> nodes = new ArrayList<AirportInterface>();
+    for (AirportInterface airport : airports) {
+      if (graph.containsNode(airport.toString())) {
+        nodes.add(airport);
+      }
+    }
+    // the reader's airports carry dense ids, so the flights are placed without hashing codes
+    loadedNetwork = FlightNetwork.fromAirports(nodes, new ArrayList<FlightInterface>(flights));
+    return loadedNetwork;
   }
 
   /**
@@ -94,15 +733,35 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public double getFinalPrice(Path path) {
+    RouteCache cache = routeCache;
+    double cached = cache == null ? Double.NaN : cache.priceOf(path);
+    if (!Double.isNaN(cached)) {
+      return cached;
+    }
+    return priceOf(engine.snapshot().network, path); // read every hop from the same snapshot
+  }
+
+  private double priceOf(FlightNetwork network, Path path) {
     int total = 0;
     for (int i = 0; i < path.nodeList.size() - 1; i++) { // traverse the path and sum the miles from
       // the edges to each node
-      FlightInterface edge = graph.getEdge(path.nodeList.get(i), path.nodeList.get(i + 1));
+      FlightInterface edge = flightOf(network, path, i);
       total += edge.getPrice(); // sum the price data from each edge
     }
     return total;
   }
 
+  /**
+   * Returns the flight taken out of the i-th airport of a path: the one the route was found with
+   * when the path knows it (routes can differ only in which of two parallel flights they take),
+   * else the cheapest flight between the two airports
+   */
+  private FlightInterface flightOf(FlightNetwork network, Path path, int i) {
+    if (path.flights != null && path.flights.size() == path.nodeList.size() - 1) {
+      return path.flights.get(i);
+    }
+    return network.getFlight(path.nodeList.get(i), path.nodeList.get(i + 1));
+  }
 
   /**
    * This method returns the number of layovers of a flight(airports reached that are not the start
@@ -124,14 +783,12 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public List<String> getAirportLocations() {
-    ArrayList<String> ret = new ArrayList<String>();
-    for (AirportInterface a : this.nodeList) { // nodelist is created in loadData() from
+    LinkedHashSet<String> ret = new LinkedHashSet<String>(); // drops duplicates in O(1) each
+    for (AirportInterface a : this.airports) { // airports are added by loadData() from
                                                // DataWrangler's getAirports method
-      if (!ret.contains(a.toString())) { // want to return non-duplicate airport locations
-        ret.add(a.toString());
-      }
+      ret.add(a.toString());
     }
-    return ret;
+    return new ArrayList<String>(ret);
   }
 
   /**
@@ -141,14 +798,11 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public FlightInterface getMinimumCostFlight() {
-    FlightInterface min = this.edgeList.get(0); // set min to first flight in edgelist
-    for (FlightInterface a : this.edgeList) { // edgelist is created in loadData() from
-                                              // DataWrangler's getFlights method
-      if (a.getPrice() < min.getPrice()) {
-        min = a; // change the minimum if lower price is found
-      }
+    FlightInterface flight = stats.getMinimumCost(); // read from the index, no scan
+    if (flight == null) {
+      throw new NoSuchElementException("No flights are loaded");
     }
-    return min;
+    return flight;
   }
 
   /**
@@ -158,14 +812,11 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public FlightInterface getMaximumCostFlight() {
-    FlightInterface max = this.edgeList.get(0); // set max to first flight in edgelist
-    for (FlightInterface a : this.edgeList) { // edgelist is created in loadData() from
-                                              // DataWrangler's getFlights method
-      if (a.getPrice() > max.getPrice()) {
-        max = a; // change the maximum if higher price is found
-      }
+    FlightInterface flight = stats.getMaximumCost(); // read from the index, no scan
+    if (flight == null) {
+      throw new NoSuchElementException("No flights are loaded");
     }
-    return max;
+    return flight;
   }
 
   /**
@@ -175,14 +826,11 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public FlightInterface getMinimumDistanceFlight() {
-    FlightInterface min = this.edgeList.get(0); // set min to first flight in edgelist
-    for (FlightInterface a : this.edgeList) { // edgelist is created in loadData() from
-                                              // DataWrangler's getFlights method
-      if (a.getMiles() < min.getMiles()) {
-        min = a; // change the minimum if lower distance is found
-      }
+    FlightInterface flight = stats.getMinimumDistance(); // read from the index, no scan
+    if (flight == null) {
+      throw new NoSuchElementException("No flights are loaded");
     }
-    return min;
+    return flight;
   }
 
   /**
@@ -192,14 +840,11 @@ public class BackendBD implements BackendInterface {
    */
   @Override
   public FlightInterface getMaximumDistanceFlight() {
-    FlightInterface max = this.edgeList.get(0); // set max to first flight in edgelist
-    for (FlightInterface a : this.edgeList) { // edgelist is created in loadData() from
-                                              // DataWrangler's getFlights method
-      if (a.getMiles() > max.getMiles()) {
-        max = a; // change the maximum if higher distance is found
-      }
+    FlightInterface flight = stats.getMaximumDistance(); // read from the index, no scan
+    if (flight == null) {
+      throw new NoSuchElementException("No flights are loaded");
     }
-    return max;
+    return flight;
   }
 
   /**
@@ -209,25 +854,107 @@ public class BackendBD implements BackendInterface {
    * @param fileName - name of dotgraph file
    */
   @Override
-  public void loadData(String fileName) throws FileNotFoundException {
-    this.reader.readFlightsFromFile(fileName); // parse the file
+  public synchronized void loadData(String fileName) throws FileNotFoundException {
+    long start = System.nanoTime();
+    // a snapshot written after the csv last changed holds the same flights and loads much faster
+    if (BinarySnapshot.isFresh(fileName)) {
+      try {
+        BinarySnapshot snapshot = BinarySnapshot.read(BinarySnapshot.fileFor(fileName));
+        PerformanceMetrics.phase("backend.loadData.readSnapshot", System.nanoTime() - start,
+            snapshot.network.getEdgeCount());
+        loadSnapshot(snapshot);
+        PerformanceMetrics.phase("backend.loadData", System.nanoTime() - start, graph.getEdgeCount());
+        return;
+      } catch (IOException e) {
+        // unreadable or from another version, parse the csv instead
+      }
+    }
+    int firstFlight = this.reader.getFlights().size(); // readers keep the flights of earlier files
+    boolean empty = graph.getNodeCount() == 0;
+    this.reader.readFlightsFromFile(fileName); // parse the file, the reader times itself
 
     // access the list of airports and flights
-    edgeList = this.reader.getFlights();
-    nodeList = this.reader.getAirports();
+    insertLoaded(this.reader.getAirports(), this.reader.getFlights(), null);
+    PerformanceMetrics.phase("backend.loadData", System.nanoTime() - start, graph.getEdgeCount());
+
+    if (snapshotCaching) {
+      try {
+        List<FlightInterface> parsed = this.reader.getFlights();
+        saveSnapshot(BinarySnapshot.fileFor(fileName), parsed.subList(firstFlight, parsed.size()),
+            empty && firstFlight == 0);
+      } catch (IOException e) {
+        // the snapshot is only a shortcut, the data is loaded either way
+      }
+    }
+  }
+
+  /**
+   * Loads the airports and flights of a binary snapshot, reusing its all-pairs table
+   * 
+   * @param snapshot - the snapshot that was read
+   */
+  private void loadSnapshot(BinarySnapshot snapshot) {
+    boolean empty = graph.getNodeCount() == 0; // else the graph ends up with more than the snapshot
+    insertLoaded(snapshot.getAirports(), snapshot.network.getFlights(), empty ? snapshot.table : null);
+  }
 
+  /**
+   * Inserts loaded airports and flights into the graph and publishes the result to the route
+   * queries
+   * 
+   * @param nodeList - the airports to insert
+   * @param edgeList - the flights to insert
+   * @param table - an all-pairs table of the loaded flights to reuse, or null
+   */
+  private void insertLoaded(List<? extends AirportInterface> nodeList,
+      List<? extends FlightInterface> edgeList, AllPairsTable table) {
+    long start = System.nanoTime();
     // insert the nodes (String - Airports) into the graph, this loop must be done before edges are
     // inserted
-    for (AirportInterface a : this.nodeList) {
-      if (!graph.containsNode(a.toString())) {
-        graph.insertNode(a.toString()); // graph takes in string, while reader uses Airport
-                                        // Interface, use toString to resolve
+    for (AirportInterface a : nodeList) {
+      if (graph.insertNode(a.toString())) { // graph takes in string, while reader uses Airport
+                                            // Interface, use toString to resolve
+        airports.add(a);
       }
     }
 
     // insert the edges (Flights) into the graph, do this after the nodes or else errors...
-    for (FlightInterface f : this.edgeList) {
-      graph.insertEdge(f.getOriginAirport(), f.getDestinationAirport(), f);
+    // the reader's airports carry dense ids (see Airport.getId), so a Graph is handed node ids and
+    // no airport code is looked up per flight
+    int[] nodeIds = graph instanceof Graph ? ((Graph<String, FlightInterface>) graph).idsOf(nodeList) : null;
+    bulkLoading = true; // too many changes to track one by one
+    try {
+      for (FlightInterface f : edgeList) {
+        int origin = -1;
+        int destination = -1;
+        if (nodeIds != null && f instanceof Flight) {
+          Flight flight = (Flight) f;
+          int u = flight.getOriginId();
+          int v = flight.getDestinationId();
+          if (u >= 0 && u < nodeIds.length && v >= 0 && v < nodeIds.length
+              && nodeList.get(u) == flight.getOrigin() && nodeList.get(v) == flight.getDestination()) {
+            origin = nodeIds[u];
+            destination = nodeIds[v];
+          }
+        }
+        insertFlight(f, origin, destination);
+      }
+    } finally {
+      bulkLoading = false;
+    }
+    PerformanceMetrics.phase("backend.loadData.insert", System.nanoTime() - start, edgeList.size());
+    start = System.nanoTime();
+
+    // publish the loaded graph (with its hierarchy and all-pairs table, when turned on) to the
+    // route queries
+    loadedNetwork = null;
+    engine.publish(getNetwork(), table);
+    PerformanceMetrics.phase("backend.loadData.publish", System.nanoTime() - start,
+        graph.getNodeCount());
+    cacheChanges.clear();
+    RouteCache cache = routeCache;
+    if (cache != null) {
+      cache.clear();
     }
   }
 
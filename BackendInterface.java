@@ -12,6 +12,18 @@ public interface BackendInterface {
 
   public List<Path> getShortestPaths(String a,String b);
 
+  public List<Path> getShortestPaths(String a, String b, int k);
+
+  public Path getShortestPath(String a, String b);
+
+  public double getShortestPathCost(String a, String b);
+
+  public List<Path> getShortestPathsByLayovers(String a, String b, int maxLayovers);
+
+  public ShortestPathTree getRoutesFrom(String a);
+
+  public double[][] getCostMatrix(List<String> origins, List<String> destinations);
+
   public double getFinalPrice(Path path);
 
 
@@ -22,6 +34,8 @@ public interface BackendInterface {
   public FlightInterface getMaximumCostFlight();
   public FlightInterface getMinimumDistanceFlight();
   public FlightInterface getMaximumDistanceFlight(); 
+  public PerformanceMetrics.Snapshot getPerformanceStatistics();
+  public void setPerformanceMetrics(boolean enabled);
 
 
 
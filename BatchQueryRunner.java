@@ -0,0 +1,277 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Answers a file of route queries against one loaded backend without the menu. Every line of the
+ * query file is origin,destination and optionally the number of routes k; blank lines, lines
+ * starting with # and lines that don't parse (like a header) are skipped. Queries run on a pool of
+ * worker threads, which the backend allows since route queries read an immutable snapshot, and the
+ * results are written in the order of the query file as soon as they are ready: a bounded window of
+ * queries is in flight, so neither the queries nor the results are ever all in memory. The output
+ * is csv, one row per route, or JSON, one object per query and line. Every query is timed, and the
+ * run ends with its throughput and latency percentiles.
+ */
+public class BatchQueryRunner {
+
+	/**
+	 * The output formats
+	 */
+	public enum Format {
+		CSV, JSON
+	}
+
+	private static final int WINDOW_PER_THREAD = 64; // queries in flight per worker
+
+	private final BackendInterface backend; // the loaded backend the queries run against
+	private final int threads; // worker threads
+	private final int defaultK; // routes per query when its line doesn't say
+
+	/**
+	 * @param backend - a loaded backend whose route queries are safe to run at once, like BackendBD
+	 * @param threads - the number of worker threads, at least 1
+	 * @param defaultK - routes per query for lines without k, at least 1
+	 */
+	public BatchQueryRunner(BackendInterface backend, int threads, int defaultK) {
+		if (threads < 1 || defaultK < 1) throw new IllegalArgumentException("Threads and routes have to be at least 1");
+		this.backend = backend;
+		this.threads = threads;
+		this.defaultK = defaultK;
+	}
+
+	/**
+	 * The totals of a run
+	 */
+	public static class Summary {
+		public final long queries; // queries answered or failed
+		public final long failed; // queries without a route or with an unknown airport
+		public final long skipped; // lines that weren't queries
+		public final long nanos; // wall-clock time of the run
+		public final Histogram.Summary latency; // nanoseconds per query
+
+		Summary(long queries, long failed, long skipped, long nanos, Histogram.Summary latency) {
+			this.queries = queries;
+			this.failed = failed;
+			this.skipped = skipped;
+			this.nanos = nanos;
+			this.latency = latency;
+		}
+
+		/**
+		 * Returns queries per second
+		 */
+		public double getThroughput() {
+			return nanos == 0 ? 0 : queries / (nanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT,
+					"%d queries (%d failed, %d lines skipped) in %.2f s: %.1f queries/s%n"
+							+ "latency us: mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+					queries, failed, skipped, nanos / 1e9, getThroughput(), latency.mean / 1e3, latency.p50 / 1e3,
+					latency.p90 / 1e3, latency.p99 / 1e3, latency.p999 / 1e3, latency.max / 1e3);
+		}
+	}
+
+	/**
+	 * The answer to one query, formatted
+	 */
+	private static class Answer {
+		final String text; // the output lines of the query
+		final boolean failed;
+
+		Answer(String text, boolean failed) {
+			this.text = text;
+			this.failed = failed;
+		}
+	}
+
+	/**
+	 * Runs every query of a query file and writes the results
+	 * @param queries - the query file
+	 * @param out - where the results go, buffered by the caller; flushed at the end
+	 * @param format - csv or JSON
+	 * @return - the totals of the run
+	 */
+	public Summary run(Reader queries, Writer out, Format format) throws IOException, InterruptedException {
+		Histogram latency = new Histogram();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayDeque<Future<Answer>> inFlight = new ArrayDeque<Future<Answer>>();
+		int window = threads * WINDOW_PER_THREAD;
+		long count = 0;
+		long written = 0;
+		long failed = 0;
+		long skipped = 0;
+		long start = System.nanoTime();
+		try {
+			out.write(format == Format.CSV ? "query,origin,destination,k,rank,route,price,miles,layovers,cost,latency_us,error\n"
+					: "[\n");
+			BufferedReader lines = new BufferedReader(queries);
+			String line;
+			while ((line = lines.readLine()) != null) {
+				String[] query = parse(line);
+				if (query == null) {
+					if (!line.trim().isEmpty() && !line.trim().startsWith("#")) skipped++;
+					continue;
+				}
+				long index = count++;
+				int k = query.length > 2 ? Integer.parseInt(query[2]) : defaultK;
+				inFlight.add(pool.submit(() -> answer(index, query[0], query[1], k, format, latency)));
+				if (inFlight.size() >= window) failed += write(inFlight.poll(), out, format, written++ == 0);
+			}
+			while (!inFlight.isEmpty()) failed += write(inFlight.poll(), out, format, written++ == 0);
+			if (format == Format.JSON) out.write(count == 0 ? "]\n" : "\n]\n");
+			out.flush();
+		} finally {
+			pool.shutdownNow();
+		}
+		return new Summary(count, failed, skipped, System.nanoTime() - start, latency.summary());
+	}
+
+	/**
+	 * Splits a query line into origin, destination and optionally k
+	 * @return - the fields, null if the line isn't a query
+	 */
+	private static String[] parse(String line) {
+		String[] fields = line.trim().split("\\s*,\\s*");
+		if (fields.length < 2 || fields.length > 3 || fields[0].isEmpty() || fields[1].isEmpty()
+				|| fields[0].startsWith("#")) {
+			return null;
+		}
+		if (fields.length == 3) {
+			try {
+				if (Integer.parseInt(fields[2]) < 1) return null;
+			} catch (NumberFormatException e) {
+				return null; // a header line
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Writes the next answer in query order, waiting for it if it isn't ready
+	 * @return - 1 if the query failed, else 0
+	 */
+	private static int write(Future<Answer> next, Writer out, Format format, boolean first) throws IOException,
+			InterruptedException {
+		Answer answer;
+		try {
+			answer = next.get();
+		} catch (ExecutionException e) {
+			throw new IOException("A query could not be answered", e.getCause());
+		}
+		if (format == Format.JSON && !first) out.write(",\n");
+		out.write(answer.text);
+		return answer.failed ? 1 : 0;
+	}
+
+	/**
+	 * Runs one query on a worker thread and formats its routes. A query that fails, while searching
+	 * or while its routes are priced and formatted, becomes an error answer and the batch goes on
+	 */
+	private Answer answer(long index, String origin, String destination, int k, Format format, Histogram latency) {
+		long start = System.nanoTime();
+		long nanos = -1; // time of the search, -1 until it returned
+		try {
+			List<Path> paths = backend.getShortestPaths(origin, destination, k);
+			nanos = System.nanoTime() - start;
+			latency.record(nanos);
+			return new Answer(routes(index, origin, destination, k, paths, nanos, format), false);
+		} catch (RuntimeException e) { // no route, an unknown airport, a route that can't be priced
+			if (nanos < 0) {
+				nanos = System.nanoTime() - start;
+				latency.record(nanos);
+			}
+			String error = e.getMessage() == null ? e.toString() : e.getMessage();
+			return new Answer(failure(index, origin, destination, k, error, nanos, format), true);
+		}
+	}
+
+	/**
+	 * Formats the routes of a query that was answered
+	 */
+	private String routes(long index, String origin, String destination, int k, List<Path> paths, long nanos,
+			Format format) {
+		StringBuilder text = new StringBuilder();
+		if (format == Format.CSV) {
+			String prefix = index + "," + csv(origin) + "," + csv(destination) + "," + k + ",";
+			for (int rank = 0; rank < paths.size(); rank++) {
+				Path path = paths.get(rank);
+				text.append(prefix).append(rank + 1).append(',').append(csv(String.join(">", path.nodeList)))
+						.append(String.format(Locale.ROOT, ",%.2f,%d,%d,%.2f,%.1f,%n", backend.getFinalPrice(path),
+								backend.getDistanceTraveled(path), backend.getNumLayovers(path), path.cost, nanos / 1e3));
+			}
+		} else {
+			text.append(header(index, origin, destination, k, nanos)).append("\"routes\": [");
+			for (int rank = 0; rank < paths.size(); rank++) {
+				Path path = paths.get(rank);
+				if (rank > 0) text.append(", ");
+				text.append("{\"airports\": [");
+				for (int i = 0; i < path.nodeList.size(); i++) {
+					if (i > 0) text.append(", ");
+					text.append(json(path.nodeList.get(i)));
+				}
+				text.append(String.format(Locale.ROOT, "], \"price\": %.2f, \"miles\": %d, \"layovers\": %d, \"cost\": %.2f}",
+						backend.getFinalPrice(path), backend.getDistanceTraveled(path), backend.getNumLayovers(path),
+						path.cost));
+			}
+			text.append("]}");
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Formats a query that failed
+	 */
+	private static String failure(long index, String origin, String destination, int k, String error, long nanos,
+			Format format) {
+		if (format == Format.CSV) {
+			return index + "," + csv(origin) + "," + csv(destination) + "," + k + ","
+					+ String.format(Locale.ROOT, "0,,,,,,%.1f,%s%n", nanos / 1e3, csv(error));
+		}
+		return header(index, origin, destination, k, nanos) + "\"routes\": [], \"error\": " + json(error) + "}";
+	}
+
+	/**
+	 * Returns the start of the JSON object of a query
+	 */
+	private static String header(long index, String origin, String destination, int k, long nanos) {
+		return String.format(Locale.ROOT, "  {\"query\": %d, \"origin\": %s, \"destination\": %s, \"k\": %d, \"latencyMicros\": %.1f, ",
+				index, json(origin), json(destination), k, nanos / 1e3);
+	}
+
+	/**
+	 * Quotes a csv field when it holds a comma, a quote or a line break
+	 */
+	private static String csv(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) return field;
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Returns a JSON string literal
+	 */
+	private static String json(String value) {
+		StringBuilder s = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				s.append('\\').append(c);
+			} else if (c < 0x20) {
+				s.append(String.format("\\u%04x", (int) c));
+			} else {
+				s.append(c);
+			}
+		}
+		return s.append('"').toString();
+	}
+}
@@ -0,0 +1,331 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the hot paths of the reader, the graph and the backend, on Flights.csv and on
+ * synthetic networks of growing size (see CHBenchmark.synthetic). Works like JMH's average time
+ * mode, which this tree has no build setup for: every benchmark runs warmup iterations, then
+ * measured iterations of a fixed time, and reports the mean time per operation with a 99.9%
+ * confidence error, the bytes allocated per operation (from the thread's allocation counter) and
+ * the garbage collections during the measurement. Results are written as JSON in JMH's layout and
+ * can be compared against a stored baseline run.
+ *
+ * Run with: java BenchmarkSuite [options]
+ *   -sizes 1000,5000,20000   synthetic network sizes, empty for Flights.csv only
+ *   -file Flights.csv        flights file to benchmark
+ *   -wi 3 -i 5 -t 500        warmup iterations, measured iterations, milliseconds per iteration
+ *   -filter text             only benchmarks whose name contains text
+ *   -out results.json        where to write the results
+ *   -baseline base.json      results to compare against; exits with 2 on a regression
+ *   -threshold 10            slowdown in percent that counts as a regression
+ */
+public class BenchmarkSuite {
+
+	/**
+	 * One operation of a benchmark. The result is consumed so the work can't be optimized away
+	 */
+	private interface Operation {
+		Object run(int i) throws Exception;
+	}
+
+	/**
+	 * The measurement of one benchmark on one network
+	 */
+	private static class Result {
+		final String benchmark;
+		final String network;
+		final double nsPerOp; // mean over the measured iterations
+		final double error; // half width of the 99.9% confidence interval
+		final double bytesPerOp; // allocated by the benchmark thread per operation
+		final long gcCount; // collections during the measured iterations
+		final long ops; // operations measured
+
+		Result(String benchmark, String network, double nsPerOp, double error, double bytesPerOp, long gcCount, long ops) {
+			this.benchmark = benchmark;
+			this.network = network;
+			this.nsPerOp = nsPerOp;
+			this.error = error;
+			this.bytesPerOp = bytesPerOp;
+			this.gcCount = gcCount;
+			this.ops = ops;
+		}
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static volatile int sink; // where results go so the JIT can't drop the operations
+
+	private int warmups = 3;
+	private int iterations = 5;
+	private long iterationNanos = 500_000_000L;
+	private String filter = "";
+	private final List<Result> results = new ArrayList<Result>();
+
+	public static void main(String[] args) throws IOException {
+		BenchmarkSuite suite = new BenchmarkSuite();
+		String file = "Flights.csv";
+		String out = "benchmark-results.json";
+		String baseline = null;
+		double threshold = 10;
+		int[] sizes = { 1000, 5000, 20000 };
+		for (int a = 0; a + 1 < args.length; a += 2) {
+			String value = args[a + 1];
+			switch (args[a]) {
+				case "-sizes":
+					sizes = value.isEmpty() ? new int[0]
+							: Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+					break;
+				case "-file": file = value; break;
+				case "-wi": suite.warmups = Integer.parseInt(value); break;
+				case "-i": suite.iterations = Integer.parseInt(value); break;
+				case "-t": suite.iterationNanos = Long.parseLong(value) * 1_000_000L; break;
+				case "-filter": suite.filter = value; break;
+				case "-out": out = value; break;
+				case "-baseline": baseline = value; break;
+				case "-threshold": threshold = Double.parseDouble(value); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[a]);
+			}
+		}
+
+		File dir = Files.createTempDirectory("flight-bench").toFile();
+		try {
+			// a copy, so a binary snapshot next to the original isn't read instead of the csv
+			File copy = new File(dir, new File(file).getName());
+			Files.copy(new File(file).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			suite.runNetwork(new File(file).getName(), copy);
+			for (int size : sizes) {
+				suite.runNetwork("synthetic-" + size, writeSynthetic(size, new File(dir, "synthetic-" + size + ".csv")));
+			}
+		} finally {
+			for (File f : dir.listFiles()) f.delete();
+			dir.delete();
+		}
+
+		suite.writeJson(out);
+		System.out.println("results written to " + out);
+		if (baseline != null && suite.compare(baseline, threshold) > 0) System.exit(2);
+	}
+
+	/**
+	 * Writes a synthetic hub-and-spoke network as a flights file
+	 */
+	private static File writeSynthetic(int airports, File file) throws FileNotFoundException {
+		try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+			writer.println("Origin,Dest,Price/Ticket,Miles");
+			for (FlightInterface f : CHBenchmark.synthetic(airports, new Random(airports)).getNetwork().getFlights()) {
+				writer.println(f.getOriginAirport() + "," + f.getDestinationAirport() + "," + f.getPrice() + ","
+						+ (long) f.getMiles());
+			}
+		} catch (IOException e) {
+			throw new FileNotFoundException(e.getMessage());
+		}
+		return file;
+	}
+
+	/**
+	 * Runs every benchmark on one flights file
+	 */
+	private void runNetwork(String network, File csv) throws FileNotFoundException {
+		String path = csv.getPath();
+		Graph<String, FlightInterface> graph = new Graph<String, FlightInterface>();
+		BackendBD backend = new BackendBD(graph, new MappedFlightReader());
+		backend.setRouteCache(0, 0); // every query searches
+		backend.loadData(path);
+		BackendBD cached = new BackendBD(new Graph<String, FlightInterface>(), new MappedFlightReader());
+		cached.loadData(path);
+		FlightNetwork net = graph.getNetwork();
+		System.out.println("== " + network + ": " + net.getNodeCount() + " airports, " + net.getEdgeCount() + " flights");
+
+		Random random = new Random(42);
+		String[][] pairs = new String[1024][]; // random airport pairs for route queries
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = new String[] { net.nameOf(random.nextInt(net.getNodeCount())),
+					net.nameOf(random.nextInt(net.getNodeCount())) };
+		}
+		String[][] legs = new String[1024][]; // pairs that have a flight, for edge lookups
+		for (int i = 0; i < legs.length; i++) {
+			FlightInterface f = net.flightOf(random.nextInt(net.getEdgeCount()));
+			legs[i] = new String[] { f.getOriginAirport(), f.getDestinationAirport() };
+		}
+
+		// FlightReaders share their lists, so after the first read every row is found already listed:
+		// this measures parsing and deduplication; the mapped reader starts empty every time
+		run("reader.readFlightsFromFile", network, i -> {
+			FlightReader reader = new FlightReader();
+			reader.readFlightsFromFile(path);
+			return reader.getFlights().size();
+		});
+		run("reader.mapped.readFlightsFromFile", network, i -> {
+			MappedFlightReader reader = new MappedFlightReader();
+			reader.readFlightsFromFile(path);
+			return reader.getFlights().size();
+		});
+		run("backend.loadData", network, i -> {
+			BackendBD fresh = new BackendBD(new Graph<String, FlightInterface>(), new MappedFlightReader());
+			fresh.loadData(path);
+			return fresh;
+		});
+		run("graph.computeShortestPath", network, i -> {
+			String[] pair = pairs[i & 1023];
+			try {
+				return graph.computeShortestPath(pair[0], pair[1]).cost;
+			} catch (NoSuchElementException e) {
+				return e;
+			}
+		});
+		run("graph.getEdgeHelper", network, i -> graph.getEdgeHelper(legs[i & 1023][0], legs[i & 1023][1]));
+		run("backend.getShortestPaths", network, i -> paths(backend, pairs[i & 1023]));
+		run("backend.getShortestPaths.cached", network, i -> paths(cached, pairs[i & 63])); // few pairs, mostly hits
+		run("backend.getMinimumCostFlight", network, i -> backend.getMinimumCostFlight());
+		run("backend.getMaximumCostFlight", network, i -> backend.getMaximumCostFlight());
+		run("backend.getMinimumDistanceFlight", network, i -> backend.getMinimumDistanceFlight());
+		run("backend.getMaximumDistanceFlight", network, i -> backend.getMaximumDistanceFlight());
+		System.out.println();
+	}
+
+	private static Object paths(BackendBD backend, String[] pair) {
+		try {
+			return backend.getShortestPaths(pair[0], pair[1]);
+		} catch (NoSuchElementException e) {
+			return e;
+		}
+	}
+
+	/**
+	 * Warms up and measures one benchmark, printing and keeping its result
+	 */
+	private void run(String benchmark, String network, Operation op) {
+		if (!benchmark.contains(filter)) return;
+		try {
+			for (int w = 0; w < warmups; w++) iterate(op, new long[3]);
+			long gcBefore = gcCount();
+			double[] perOp = new double[iterations];
+			long totalOps = 0;
+			long totalBytes = 0;
+			for (int it = 0; it < iterations; it++) {
+				long[] measured = new long[3]; // operations, nanoseconds, bytes
+				iterate(op, measured);
+				perOp[it] = (double) measured[1] / measured[0];
+				totalOps += measured[0];
+				totalBytes += measured[2];
+			}
+			long gcs = gcCount() - gcBefore;
+			double mean = 0;
+			for (double t : perOp) mean += t;
+			mean /= iterations;
+			double variance = 0;
+			for (double t : perOp) variance += (t - mean) * (t - mean);
+			double error = iterations > 1 ? 3.29 * Math.sqrt(variance / (iterations - 1)) / Math.sqrt(iterations) : 0;
+			Result result = new Result(benchmark, network, mean, error, (double) totalBytes / totalOps, gcs, totalOps);
+			results.add(result);
+			System.out.printf(Locale.ROOT, "%-36s %14s +- %-10s %12.0f B/op %5d gc%n", benchmark, time(mean),
+					time(error), result.bytesPerOp, gcs);
+		} catch (Exception e) {
+			System.out.println(benchmark + " failed: " + e);
+		}
+	}
+
+	/**
+	 * Runs the operation for one iteration's time, adding the count, time and allocation to measured
+	 */
+	private void iterate(Operation op, long[] measured) throws Exception {
+		long thread = Thread.currentThread().getId();
+		long bytes = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		long elapsed;
+		int i = 0;
+		int hash = 0;
+		do {
+			Object result = op.run(i++);
+			hash += result == null ? 0 : result.hashCode();
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		measured[0] += i;
+		measured[1] += elapsed;
+		measured[2] += THREADS.getThreadAllocatedBytes(thread) - bytes;
+		sink = hash;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static String time(double nanos) {
+		if (nanos >= 1e6) return String.format(Locale.ROOT, "%.2f ms/op", nanos / 1e6);
+		if (nanos >= 1e3) return String.format(Locale.ROOT, "%.2f us/op", nanos / 1e3);
+		return String.format(Locale.ROOT, "%.1f ns/op", nanos);
+	}
+
+	/**
+	 * Writes the results in JMH's JSON layout, one benchmark per line
+	 */
+	private void writeJson(String file) throws FileNotFoundException {
+		try (PrintWriter writer = new PrintWriter(file)) {
+			writer.println("[");
+			for (int r = 0; r < results.size(); r++) {
+				Result result = results.get(r);
+				writer.printf(Locale.ROOT, "  {\"benchmark\": \"%s\", \"mode\": \"avgt\", \"params\": {\"network\": \"%s\"}, "
+						+ "\"measurementIterations\": %d, \"operations\": %d, "
+						+ "\"primaryMetric\": {\"score\": %.3f, \"scoreError\": %.3f, \"scoreUnit\": \"ns/op\"}, "
+						+ "\"secondaryMetrics\": {\"gc.alloc.rate.norm\": {\"score\": %.1f, \"scoreUnit\": \"B/op\"}, "
+						+ "\"gc.count\": {\"score\": %d, \"scoreUnit\": \"counts\"}}}%s%n",
+						result.benchmark, result.network, iterations, result.ops, result.nsPerOp, result.error,
+						result.bytesPerOp, result.gcCount, r + 1 < results.size() ? "," : "");
+			}
+			writer.println("]");
+		}
+	}
+
+	private static final Pattern ENTRY = Pattern.compile("\"benchmark\": \"([^\"]+)\".*?\"network\": \"([^\"]+)\".*?"
+			+ "\"primaryMetric\": \\{\"score\": ([0-9.eE+-]+).*?\"gc.alloc.rate.norm\": \\{\"score\": ([0-9.eE+-]+)");
+
+	/**
+	 * Compares the results with a baseline written by an earlier run and prints the change of every
+	 * benchmark both have
+	 * @return - the number of benchmarks that got slower by more than threshold percent
+	 */
+	private int compare(String baselineFile, double threshold) throws IOException {
+		Map<String, double[]> baseline = new HashMap<String, double[]>(); // time and bytes per op
+		for (String line : Files.readAllLines(new File(baselineFile).toPath())) {
+			Matcher m = ENTRY.matcher(line);
+			if (m.find()) {
+				baseline.put(m.group(1) + " @ " + m.group(2),
+						new double[] { Double.parseDouble(m.group(3)), Double.parseDouble(m.group(4)) });
+			}
+		}
+		System.out.println("== compared with " + baselineFile);
+		int regressions = 0;
+		for (Result result : results) {
+			double[] base = baseline.get(result.benchmark + " @ " + result.network);
+			if (base == null) continue;
+			double change = (result.nsPerOp - base[0]) / base[0] * 100;
+			boolean regressed = change > threshold && result.nsPerOp - result.error > base[0];
+			if (regressed) regressions++;
+			System.out.printf(Locale.ROOT, "%-36s %-16s %+7.1f%% time %+7.1f%% alloc%s%n", result.benchmark, result.network,
+					change, base[1] == 0 ? 0 : (result.bytesPerOp - base[1]) / base[1] * 100, regressed ? "  REGRESSION" : "");
+		}
+		System.out.println(regressions + " regression(s) over " + threshold + "%");
+		return regressions;
+	}
+}
@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A FlightNetwork saved in a versioned binary file, so a later run can skip parsing the csv. The file
+ * holds the arrays of the network as they are in memory: the airport dictionary, the CSR adjacency
+ * (both directions), the weight, price and miles columns, the departure and arrival columns when
+ * some flights are ScheduledFlights, and optionally the matrices of an AllPairsTable. Reading maps the file and bulk-copies each section into its array, with no
+ * per-flight parsing.
+ *
+ * Layout, big-endian: magic, version, airport count n, flight count m, flags, dictionary byte count;
+ * int[n+1] dictionary offsets and the UTF-8 codes; int[n+1] offsets, int[m] targets, int[n+1]
+ * inOffsets, int[m] inEdges; double[m] weights, prices, miles; with the schedule flag long[m]
+ * departures and arrivals (Long.MIN_VALUE for a flight without times); with the all-pairs flag
+ * double[n*n] costs and int[n*n] predecessor edges.
+ */
+public class BinarySnapshot {
+
+	public static final int VERSION = 2; // bumped whenever the layout changes
+	private static final int MAGIC = 0x464C5453; // "FLTS"
+	private static final int HAS_ALL_PAIRS = 1; // flag: the all-pairs matrices follow the columns
+	private static final int HAS_SCHEDULE = 2; // flag: departure and arrival columns follow the miles
+	private static final long NO_TIME = Long.MIN_VALUE; // time of a flight without a schedule
+	private static final int BLOCK = 1 << 16; // elements copied through the write buffer at once
+
+	public final FlightNetwork network; // the network read from the file
+	public final AllPairsTable table; // its all-pairs table, null if the file has none
+	private final List<AirportInterface> airports; // one Airport per node id, see Airport.getId
+	private final long readNanos; // time reading the file took
+
+	private BinarySnapshot(FlightNetwork network, AllPairsTable table, List<AirportInterface> airports,
+			long readNanos) {
+		this.network = network;
+		this.table = table;
+		this.airports = airports;
+		this.readNanos = readNanos;
+	}
+
+	/**
+	 * Returns the snapshot file kept next to a csv file
+	 */
+	public static String fileFor(String csvFile) {
+		return csvFile + ".snap";
+	}
+
+	/**
+	 * Returns true if the csv file has a snapshot that was written after the csv last changed
+	 */
+	public static boolean isFresh(String csvFile) {
+		File snapshot = new File(fileFor(csvFile));
+		File csv = new File(csvFile);
+		return snapshot.isFile() && (!csv.exists() || snapshot.lastModified() >= csv.lastModified());
+	}
+
+	/**
+	 * Returns the airports of the network in node id order, each made once and shared by its flights
+	 */
+	public List<AirportInterface> getAirports() {
+		return airports;
+	}
+
+	/**
+	 * Returns how long reading the file took, in milliseconds
+	 */
+	public double getReadMillis() {
+		return readNanos / 1e6;
+	}
+
+	/**
+	 * Writes a network and optionally its all-pairs table. The file is written under a temporary name
+	 * and moved into place, so a reader never sees half a snapshot
+	 * @param file - where to write
+	 * @param net - the network
+	 * @param table - an all-pairs table of net, or null
+	 */
+	public static void write(String file, FlightNetwork net, AllPairsTable table) throws IOException {
+		if (table != null && table.getNetwork() != net) throw new IllegalArgumentException("The table is for another network");
+		int n = net.getNodeCount();
+		int m = net.getEdgeCount();
+		byte[][] codes = new byte[n][];
+		int[] dictionary = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			codes[i] = net.nameOf(i).getBytes(StandardCharsets.UTF_8);
+			dictionary[i + 1] = dictionary[i] + codes[i].length;
+		}
+		double[] prices = new double[m];
+		double[] miles = new double[m];
+		long[] departures = null; // only made when some flight has a schedule
+		long[] arrivals = null;
+		for (int e = 0; e < m; e++) {
+			prices[e] = net.flights[e].getPrice();
+			miles[e] = net.flights[e].getMiles();
+			if (net.flights[e] instanceof ScheduledFlight) {
+				if (departures == null) {
+					departures = new long[m];
+					arrivals = new long[m];
+					Arrays.fill(departures, NO_TIME);
+					Arrays.fill(arrivals, NO_TIME);
+				}
+				departures[e] = ((ScheduledFlight) net.flights[e]).getDeparture();
+				arrivals[e] = ((ScheduledFlight) net.flights[e]).getArrival();
+			}
+		}
+		int flags = (table != null ? HAS_ALL_PAIRS : 0) | (departures != null ? HAS_SCHEDULE : 0);
+
+		File target = new File(file);
+		File temp = new File(target.getPath() + ".tmp");
+		try (RandomAccessFile out = new RandomAccessFile(temp, "rw"); FileChannel channel = out.getChannel()) {
+			out.setLength(0);
+			ByteBuffer buf = ByteBuffer.allocateDirect(8 * BLOCK);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(flags).putInt(dictionary[n]);
+			put(channel, buf, dictionary);
+			for (byte[] code : codes) {
+				if (buf.remaining() < code.length) drain(channel, buf);
+				if (code.length > buf.capacity()) {
+					channel.write(ByteBuffer.wrap(code));
+				} else {
+					buf.put(code);
+				}
+			}
+			put(channel, buf, net.offsets);
+			put(channel, buf, net.targets);
+			put(channel, buf, net.inOffsets);
+			put(channel, buf, net.inEdges);
+			put(channel, buf, net.weights);
+			put(channel, buf, prices);
+			put(channel, buf, miles);
+			if (departures != null) {
+				put(channel, buf, departures);
+				put(channel, buf, arrivals);
+			}
+			if (table != null) {
+				put(channel, buf, table.cost);
+				put(channel, buf, table.predEdge);
+			}
+			drain(channel, buf);
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void put(FileChannel channel, ByteBuffer buf, int[] values) throws IOException {
+		for (int i = 0; i < values.length; i += BLOCK) {
+			int count = Math.min(BLOCK, values.length - i);
+			if (buf.remaining() < 4 * count) drain(channel, buf);
+			buf.asIntBuffer().put(values, i, count);
+			buf.position(buf.position() + 4 * count);
+		}
+	}
+
+	private static void put(FileChannel channel, ByteBuffer buf, double[] values) throws IOException {
+		for (int i = 0; i < values.length; i += BLOCK) {
+			int count = Math.min(BLOCK, values.length - i);
+			if (buf.remaining() < 8 * count) drain(channel, buf);
+			buf.asDoubleBuffer().put(values, i, count);
+			buf.position(buf.position() + 8 * count);
+		}
+	}
+
+	private static void put(FileChannel channel, ByteBuffer buf, long[] values) throws IOException {
+		for (int i = 0; i < values.length; i += BLOCK) {
+			int count = Math.min(BLOCK, values.length - i);
+			if (buf.remaining() < 8 * count) drain(channel, buf);
+			buf.asLongBuffer().put(values, i, count);
+			buf.position(buf.position() + 8 * count);
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) channel.write(buf);
+		buf.clear();
+	}
+
+	/**
+	 * Opens a snapshot file. The flights are rebuilt as Flight objects from the price and miles
+	 * columns, or as ScheduledFlights where the file has times for them; their weights come from the
+	 * file, not from value()
+	 * @param file - the file written by write
+	 * @throws IOException - if the file can't be read, isn't a snapshot, or is of another version
+	 */
+	public static BinarySnapshot read(String file) throws IOException {
+		long start = System.nanoTime();
+		try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.remaining() < 24 || buf.getInt() != MAGIC) throw new IOException(file + " is not a flight snapshot");
+			int version = buf.getInt();
+			if (version != VERSION) throw new IOException(file + " has snapshot version " + version + ", expected " + VERSION);
+			int n = buf.getInt();
+			int m = buf.getInt();
+			int flags = buf.getInt();
+			int dictionaryBytes = buf.getInt();
+			if ((flags & HAS_ALL_PAIRS) != 0 && n > AllPairsTable.MAX_AIRPORTS) {
+				throw new IOException(file + " is corrupt, its all-pairs table has too many airports");
+			}
+			long expected = 24 + 4L * (n + 1) + dictionaryBytes + 4L * (2 * (n + 1) + 2 * m) + 24L * m
+					+ ((flags & HAS_SCHEDULE) != 0 ? 16L * m : 0) + ((flags & HAS_ALL_PAIRS) != 0 ? 12L * n * n : 0);
+			if (channel.size() != expected) throw new IOException(file + " is truncated or corrupt");
+
+			int[] dictionary = ints(buf, n + 1);
+			byte[] codes = new byte[dictionaryBytes];
+			buf.get(codes);
+			String[] names = new String[n];
+			for (int i = 0; i < n; i++)
+				names[i] = new String(codes, dictionary[i], dictionary[i + 1] - dictionary[i], StandardCharsets.UTF_8);
+			int[] offsets = ints(buf, n + 1);
+			int[] targets = ints(buf, m);
+			int[] inOffsets = ints(buf, n + 1);
+			int[] inEdges = ints(buf, m);
+			double[] weights = doubles(buf, m);
+			double[] prices = doubles(buf, m);
+			double[] miles = doubles(buf, m);
+			long[] departures = (flags & HAS_SCHEDULE) != 0 ? longs(buf, m) : null;
+			long[] arrivals = (flags & HAS_SCHEDULE) != 0 ? longs(buf, m) : null;
+
+			Airport[] airports = new Airport[n];
+			for (int i = 0; i < n; i++) airports[i] = new Airport(names[i], i);
+			FlightInterface[] flights = new FlightInterface[m];
+			for (int u = 0; u < n; u++) {
+				for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+					flights[e] = departures == null || departures[e] == NO_TIME
+							? new Flight(airports[u], airports[targets[e]], prices[e], miles[e])
+							: new ScheduledFlight(airports[u], airports[targets[e]], prices[e], miles[e], departures[e],
+									arrivals[e]);
+				}
+			}
+			FlightNetwork network = new FlightNetwork(names, offsets, targets, weights, flights, inOffsets, inEdges);
+			AllPairsTable table = null;
+			if ((flags & HAS_ALL_PAIRS) != 0) {
+				double[] cost = doubles(buf, n * n);
+				int[] predEdge = ints(buf, n * n);
+				table = new AllPairsTable(network, cost, predEdge, 0);
+			}
+			return new BinarySnapshot(network, table, new ArrayList<AirportInterface>(Arrays.asList(airports)),
+					System.nanoTime() - start);
+		}
+	}
+
+	private static int[] ints(ByteBuffer buf, int count) {
+		int[] values = new int[count];
+		buf.asIntBuffer().get(values);
+		buf.position(buf.position() + 4 * count);
+		return values;
+	}
+
+	private static long[] longs(ByteBuffer buf, int count) {
+		long[] values = new long[count];
+		buf.asLongBuffer().get(values);
+		buf.position(buf.position() + 8 * count);
+		return values;
+	}
+
+	private static double[] doubles(ByteBuffer buf, int count) {
+		double[] values = new double[count];
+		buf.asDoubleBuffer().get(values);
+		buf.position(buf.position() + 8 * count);
+		return values;
+	}
+}
@@ -0,0 +1,121 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Compares the contraction hierarchy against Graph.computeShortestPath: preprocessing time, memory
+ * and query latency, on Flights.csv and on synthetic hub-and-spoke networks of growing size. Every
+ * query is answered both ways and the costs are checked against each other.
+ *
+ * Run with: java CHBenchmark [flights file] [synthetic airport counts...]
+ */
+public class CHBenchmark {
+
+	private static final int QUERIES = 2000; // random airport pairs timed per network
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String file = args.length > 0 ? args[0] : "Flights.csv";
+		Graph<String, FlightInterface> graph = new Graph<String, FlightInterface>();
+		new BackendBD(graph, new FlightReader()).loadData(file);
+		run(file, graph);
+
+		int[] sizes = { 1000, 5000, 20000 };
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) sizes[i - 1] = Integer.parseInt(args[i]);
+		}
+		for (int size : sizes) {
+			run("synthetic " + size, synthetic(size, new Random(size)));
+		}
+	}
+
+	/**
+	 * Builds the hierarchy for one graph and times the same random queries with both searches
+	 */
+	private static void run(String name, Graph<String, FlightInterface> graph) {
+		FlightNetwork net = graph.getNetwork();
+		ContractionHierarchy hierarchy = new ContractionHierarchy(net);
+		System.out.println("== " + name + ": " + net.getNodeCount() + " airports, " + net.getEdgeCount() + " flights");
+		System.out.printf("preprocessing: %.1f ms, %d shortcuts, %.1f KB%n", hierarchy.getBuildMillis(),
+				hierarchy.getShortcutCount(), hierarchy.footprint() / 1024.0);
+
+		Random random = new Random(42);
+		String[][] pairs = new String[QUERIES][];
+		for (int i = 0; i < QUERIES; i++) {
+			pairs[i] = new String[] { net.nameOf(random.nextInt(net.getNodeCount())),
+					net.nameOf(random.nextInt(net.getNodeCount())) };
+		}
+		double[] plain = new double[QUERIES];
+		double[] contracted = new double[QUERIES];
+		// one untimed round each so the JIT has compiled both searches
+		time(graph, null, pairs, plain);
+		time(null, hierarchy, pairs, contracted);
+		long plainNanos = time(graph, null, pairs, plain);
+		long hierarchyNanos = time(null, hierarchy, pairs, contracted);
+		int mismatches = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			if (Math.abs(plain[i] - contracted[i]) > 1e-6) mismatches++;
+		}
+		System.out.printf("computeShortestPath: %.1f us/query%n", plainNanos / 1e3 / QUERIES);
+		System.out.printf("contraction hierarchy: %.1f us/query (%.1fx), %d cost mismatches%n%n",
+				hierarchyNanos / 1e3 / QUERIES, (double) plainNanos / hierarchyNanos, mismatches);
+	}
+
+	/**
+	 * Answers every pair with the graph or the hierarchy, storing the costs (-1 when there is no path)
+	 * @return - the total time taken in nanoseconds
+	 */
+	private static long time(Graph<String, FlightInterface> graph, ContractionHierarchy hierarchy,
+			String[][] pairs, double[] costs) {
+		long start = System.nanoTime();
+		for (int i = 0; i < pairs.length; i++) {
+			try {
+				costs[i] = graph != null ? graph.shortestPathCost(pairs[i][0], pairs[i][1])
+						: hierarchy.shortestPathCost(pairs[i][0], pairs[i][1]);
+			} catch (NoSuchElementException e) {
+				costs[i] = -1;
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Makes a random hub-and-spoke network: one airport in twenty is a hub, hubs are connected to
+	 * their closest hubs, and every other airport flies to its two closest hubs and back. Miles
+	 * follow the distance on a square map and prices follow the miles with some noise
+	 */
+	static Graph<String, FlightInterface> synthetic(int airports, Random random) {
+		Graph<String, FlightInterface> graph = new Graph<String, FlightInterface>();
+		double[] x = new double[airports];
+		double[] y = new double[airports];
+		List<Integer> hubs = new ArrayList<Integer>();
+		Airport[] codes = new Airport[airports];
+		for (int i = 0; i < airports; i++) {
+			x[i] = random.nextDouble() * 2500;
+			y[i] = random.nextDouble() * 2500;
+			codes[i] = new Airport("A" + i);
+			graph.insertNode(codes[i].getName());
+			if (i % 20 == 0) hubs.add(i);
+		}
+		for (int i = 0; i < airports; i++) {
+			int links = i % 20 == 0 ? 6 : 2; // hubs link to more hubs than spokes do
+			List<Integer> closest = new ArrayList<Integer>(hubs);
+			final int from = i;
+			closest.sort((a, b) -> Double.compare(Math.hypot(x[a] - x[from], y[a] - y[from]),
+					Math.hypot(x[b] - x[from], y[b] - y[from])));
+			int added = 0;
+			for (int hub : closest) {
+				if (hub == i) continue;
+				if (added++ == links) break;
+				double miles = Math.max(50, Math.hypot(x[hub] - x[i], y[hub] - y[i]));
+				graph.insertEdge(codes[i].getName(), codes[hub].getName(), new Flight(codes[i], codes[hub],
+						Math.round((40 + 0.12 * miles) * (0.8 + 0.4 * random.nextDouble()) * 100) / 100.0, Math.round(miles)));
+				graph.insertEdge(codes[hub].getName(), codes[i].getName(), new Flight(codes[hub], codes[i],
+						Math.round((40 + 0.12 * miles) * (0.8 + 0.4 * random.nextDouble()) * 100) / 100.0, Math.round(miles)));
+			}
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Graph that answers shortest path queries from a frozen compressed sparse row copy of itself
+ * (see FlightNetwork). Inserts and removes only change a staging map, the CSR arrays are rebuilt
+ * the first time a path is asked for after a change. Meant for the load-once, query-many use of
+ * the flight app, and can be passed to BackendBD in place of Graph.
+ */
+public class CSRGraph implements GraphADT<String, FlightInterface>, NetworkSource {
+
+	// origin airport -> (destination airport -> flights), in insertion order
+	private LinkedHashMap<String, LinkedHashMap<String, FlightBucket>> leaving = new LinkedHashMap<>();
+	// destination airport -> (origin airport -> flights), the same buckets
+	private LinkedHashMap<String, LinkedHashMap<String, FlightBucket>> entering = new LinkedHashMap<>();
+	private int edgeCount = 0; // Number of flights in the graph
+	private FlightNetwork network = null; // frozen copy of the graph, null after a change
+
+	/**
+	 * Inserts the node into the graph with the airport name as the parameter
+	 */
+	@Override
+	public boolean insertNode(String data) {
+		if (leaving.containsKey(data)) return false;
+		leaving.put(data, new LinkedHashMap<String, FlightBucket>());
+		entering.put(data, new LinkedHashMap<String, FlightBucket>());
+		network = null;
+		return true;
+	}
+
+	/**
+	 * Removes the node and all flights to and from it. Returns false if the node is not present
+	 */
+	@Override
+	public boolean removeNode(String data) {
+		if (!leaving.containsKey(data)) return false;
+		for (Map.Entry<String, FlightBucket> out : leaving.remove(data).entrySet()) {
+			entering.get(out.getKey()).remove(data);
+			edgeCount -= out.getValue().size();
+		}
+		for (Map.Entry<String, FlightBucket> in : entering.remove(data).entrySet()) {
+			LinkedHashMap<String, FlightBucket> back = leaving.get(in.getKey()); // null for a flight to itself
+			if (back != null && back.remove(data) != null) edgeCount -= in.getValue().size();
+		}
+		network = null;
+		return true;
+	}
+
+	/**
+	 * Checks if the airport is in the graph
+	 */
+	@Override
+	public boolean containsNode(String data) {
+		return leaving.containsKey(data);
+	}
+
+	/**
+	 * Returns the number of airports in the graph
+	 */
+	@Override
+	public int getNodeCount() {
+		return leaving.size();
+	}
+
+	/**
+	 * Inserts the flight into the graph. Like Graph, a flight between two airports that already
+	 * have one is kept next to it
+	 * @return - true if the insertion was successful. False if the destination or origin is not found
+	 */
+	@Override
+	public boolean insertEdge(String pred, String succ, FlightInterface flight) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		if (out == null || !leaving.containsKey(succ)) return false;
+		FlightBucket bucket = out.get(succ);
+		if (bucket == null) {
+			bucket = new FlightBucket(flight);
+			out.put(succ, bucket);
+			entering.get(succ).put(pred, bucket);
+		} else if (!bucket.add(flight)) {
+			return true; // already there
+		}
+		edgeCount++;
+		network = null;
+		return true;
+	}
+
+	/**
+	 * Removes every flight between two airports. Returns false if there were none
+	 */
+	@Override
+	public boolean removeEdge(String pred, String succ) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		FlightBucket bucket = out == null ? null : out.remove(succ);
+		if (bucket == null) return false;
+		entering.get(succ).remove(pred);
+		edgeCount -= bucket.size();
+		network = null;
+		return true;
+	}
+
+	/**
+	 * Removes one flight between two airports, keeping any others between them
+	 * @return - true if the flight was in the graph
+	 */
+	@Override
+	public boolean removeFlight(String pred, String succ, FlightInterface flight) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		FlightBucket bucket = out == null ? null : out.get(succ);
+		if (bucket == null || !bucket.remove(flight)) return false;
+		if (bucket.isEmpty()) {
+			out.remove(succ);
+			entering.get(succ).remove(pred);
+		}
+		edgeCount--;
+		network = null;
+		return true;
+	}
+
+	/**
+	 * Returns every flight between two airports, cheapest first. Throws if there is none
+	 */
+	public List<FlightInterface> getFlights(String pred, String succ) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		FlightBucket bucket = out == null ? null : out.get(succ);
+		if (bucket == null) throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+		return bucket.asList();
+	}
+
+	/**
+	 * Returns true if the flight is in the graph, false otherwise
+	 */
+	@Override
+	public boolean containsEdge(String pred, String succ) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		return out != null && out.containsKey(succ);
+	}
+
+	/**
+	 * Returns the cheapest flight between two airports. Throws if there is none
+	 */
+	@Override
+	public FlightInterface getEdge(String pred, String succ) {
+		LinkedHashMap<String, FlightBucket> out = leaving.get(pred);
+		FlightBucket bucket = out == null ? null : out.get(succ);
+		if (bucket == null) throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+		return bucket.best();
+	}
+
+	/**
+	 * Returns the number of edges in the graph
+	 */
+	@Override
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Returns the number of flights leaving the node
+	 */
+	@Override
+	public int getEdgesInNode(String node) {
+		int count = 0;
+		for (FlightBucket bucket : leaving.get(node).values()) count += bucket.size();
+		return count;
+	}
+
+	/**
+	 * Returns the frozen CSR copy of the graph, rebuilding it if the graph changed since the last call
+	 */
+	@Override
+	public synchronized FlightNetwork getNetwork() {
+		if (network == null) {
+			List<FlightInterface> flights = new ArrayList<FlightInterface>(edgeCount);
+			for (LinkedHashMap<String, FlightBucket> out : leaving.values()) {
+				for (FlightBucket bucket : out.values()) flights.addAll(bucket.asList());
+			}
+			network = new FlightNetwork(new ArrayList<String>(leaving.keySet()), flights);
+		}
+		return network;
+	}
+
+	/**
+	 * Returns a list of strings for the shortest path between airports
+	 */
+	@Override
+	public List<String> shortestPathData(String start, String end) {
+		return getNetwork().shortestPath(start, end).nodeList;
+	}
+
+	/**
+	 * Returns the cost of the shortest path between airports
+	 */
+	@Override
+	public double shortestPathCost(String start, String end) {
+		return getNetwork().shortestPath(start, end).cost;
+	}
+}
@@ -0,0 +1,395 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Contraction hierarchy over a FlightNetwork. Airports are contracted one at a time, least
+ * important first (fewest shortcuts added minus edges removed, plus neighbours already
+ * contracted). Removing an airport adds a shortcut between two of its remaining neighbours
+ * whenever the path through it is the only cheapest one. A query then only follows edges that go
+ * up in the contraction order, forward from the start and backward from the destination, and
+ * settles a few dozen airports instead of the whole network. Every shortcut remembers the two
+ * edges it replaced, so the answer is unpacked back into the flights of the network.
+ */
+public class ContractionHierarchy {
+
+	private static final int WITNESS_SETTLE_LIMIT = 500; // nodes a witness search may settle
+	private static final int SIMULATED_SETTLE_LIMIT = 50; // same, when only estimating a priority
+
+	private final FlightNetwork net; // the network the hierarchy was built from
+
+	// edges of the hierarchy: the network's edges under their own ids, then the shortcuts
+	private int edgeCount = 0;
+	private int[] from; // origin of every edge
+	private int[] to; // destination of every edge
+	private double[] weight; // weight of every edge
+	private int[] left; // first of the two edges a shortcut replaces, -1 for network edges
+	private int[] right; // second of the two edges a shortcut replaces, -1 for network edges
+
+	private final int[] rank; // position of every node in the contraction order
+
+	// search graph, in CSR form
+	private int[] upOffsets; // edges leaving each node toward a node contracted later
+	private int[] upEdges;
+	private int[] downOffsets; // edges entering each node from a node contracted later
+	private int[] downEdges;
+
+	// only used while contracting
+	private IntList[] out; // edges leaving every node
+	private IntList[] in; // edges entering every node
+	private boolean[] contracted; // nodes already contracted
+	private int[] deletedNeighbours; // contracted neighbours of every node
+	private int[] mark; // gather() number that last saw each node
+	private int[] slot; // position of each node in the last gathered list
+	private int markEpoch = 0;
+	private int[] inNodes, inEdges, outNodes, outEdges; // neighbours gathered by gather()
+
+	private final long buildNanos; // time the constructor took
+
+	/**
+	 * Builds the hierarchy. Takes a while on big networks, queries are fast afterward
+	 * @param net - the network to build it for
+	 */
+	public ContractionHierarchy(FlightNetwork net) {
+		long start = System.nanoTime();
+		this.net = net;
+		int n = net.getNodeCount();
+		int m = net.getEdgeCount();
+		from = new int[Math.max(16, m * 2)];
+		to = new int[from.length];
+		weight = new double[from.length];
+		left = new int[from.length];
+		right = new int[from.length];
+		out = new IntList[n];
+		in = new IntList[n];
+		for (int v = 0; v < n; v++) {
+			out[v] = new IntList();
+			in[v] = new IntList();
+		}
+		for (int e = 0; e < m; e++)
+			addEdge(net.origins[e], net.targets[e], net.weights[e], -1, -1);
+
+		rank = new int[n];
+		contracted = new boolean[n];
+		deletedNeighbours = new int[n];
+		mark = new int[n];
+		slot = new int[n];
+		inNodes = new int[n];
+		inEdges = new int[n];
+		outNodes = new int[n];
+		outEdges = new int[n];
+
+		// contract in order of priority, recomputing a node's priority when it comes up (lazy updates)
+		IndexedMinHeap queue = new IndexedMinHeap(n);
+		for (int v = 0; v < n; v++) queue.insertOrDecrease(v, priority(v));
+		int order = 0;
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			double p = priority(v);
+			if (!queue.isEmpty() && p > queue.peekKey()) {
+				queue.insertOrDecrease(v, p);
+				continue;
+			}
+			contract(v, false);
+			contracted[v] = true;
+			rank[v] = order++;
+			int outCount = gather(out[v], v, false, outNodes, outEdges);
+			for (int i = 0; i < outCount; i++) deletedNeighbours[outNodes[i]]++;
+			int inCount = gather(in[v], v, true, inNodes, inEdges);
+			for (int i = 0; i < inCount; i++) deletedNeighbours[inNodes[i]]++;
+		}
+		buildSearchGraph();
+		out = in = null;
+		contracted = null;
+		deletedNeighbours = mark = slot = inNodes = inEdges = outNodes = outEdges = null;
+		buildNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns the network the hierarchy answers for
+	 */
+	public FlightNetwork getNetwork() {
+		return net;
+	}
+
+	/**
+	 * Returns the number of shortcut edges added while contracting
+	 */
+	public int getShortcutCount() {
+		return edgeCount - net.getEdgeCount();
+	}
+
+	/**
+	 * Returns how long the hierarchy took to build, in milliseconds
+	 */
+	public double getBuildMillis() {
+		return buildNanos / 1e6;
+	}
+
+	/**
+	 * Returns roughly how many bytes the hierarchy keeps after building (not counting the network)
+	 */
+	public long footprint() {
+		return (4L * 4 + 8) * from.length + 4L * (rank.length + upOffsets.length + upEdges.length
+				+ downOffsets.length + downEdges.length);
+	}
+
+	/**
+	 * Returns a list of strings for the shortest path between airports
+	 */
+	public List<String> shortestPathData(String start, String end) {
+		return query(start, end).nodeList;
+	}
+
+	/**
+	 * Returns the cost of the shortest path between airports
+	 */
+	public double shortestPathCost(String start, String end) {
+		return query(start, end).cost;
+	}
+
+	/**
+	 * Finds the cheapest path between two airports
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @return - the airports of the path with its cost
+	 */
+	public Path query(String start, String end) {
+		int s = net.indexOf(start);
+		int t = net.indexOf(end);
+		if (s < 0 || t < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		List<String> nodes = new ArrayList<String>();
+		nodes.add(start);
+		if (s == t) return new Path(nodes, 0, new ArrayList<FlightInterface>());
+
+		SearchScratch forward = SearchScratch.local();
+		SearchScratch backward = SearchScratch.localReverse();
+		forward.reset(rank.length);
+		backward.reset(rank.length);
+		forward.relax(s, 0, -1);
+		backward.relax(t, 0, -1);
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		boolean forwardTurn = true;
+		while (true) {
+			boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+			boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+			if (!forwardOpen && !backwardOpen) break; // neither side can improve the best path
+			if (!forwardOpen) forwardTurn = false;
+			if (!backwardOpen) forwardTurn = true;
+			SearchScratch own = forwardTurn ? forward : backward;
+			SearchScratch other = forwardTurn ? backward : forward;
+			int v = own.settleNext();
+			double cost = own.dist[v];
+			if (other.isReached(v) && cost + other.dist[v] < best) {
+				best = cost + other.dist[v];
+				meet = v;
+			}
+			if (forwardTurn) {
+				for (int i = upOffsets[v]; i < upOffsets[v + 1]; i++) {
+					int e = upEdges[i];
+					forward.relax(to[e], cost + weight[e], e);
+				}
+			} else {
+				for (int i = downOffsets[v]; i < downOffsets[v + 1]; i++) {
+					int e = downEdges[i];
+					backward.relax(from[e], cost + weight[e], e);
+				}
+			}
+			forwardTurn = !forwardTurn;
+		}
+		if (meet < 0) throw new NoSuchElementException("There is not path for the start and end");
+
+		// hierarchy edges from the start up to the meeting node and from there down to the end
+		IntList path = new IntList();
+		for (int v = meet; forward.predecessor(v) >= 0; v = from[forward.predecessor(v)])
+			path.add(forward.predecessor(v));
+		path.reverse();
+		for (int v = meet; backward.predecessor(v) >= 0; v = to[backward.predecessor(v)])
+			path.add(backward.predecessor(v));
+		List<FlightInterface> flights = new ArrayList<FlightInterface>();
+		for (int e : unpack(path)) {
+			nodes.add(net.nameOf(net.targets[e]));
+			flights.add(net.flightOf(e));
+		}
+		return new Path(nodes, forward.distance(meet) + backward.distance(meet), flights);
+	}
+
+	/**
+	 * Replaces every shortcut in a list of hierarchy edges by the network edges it stands for
+	 * @return - the network edge ids in travel order
+	 */
+	protected int[] unpack(IntList edges) {
+		IntList result = new IntList();
+		IntList stack = new IntList();
+		for (int i = edges.size - 1; i >= 0; i--) stack.add(edges.items[i]);
+		while (stack.size > 0) {
+			int e = stack.items[--stack.size];
+			if (left[e] < 0) {
+				result.add(e);
+			} else {
+				stack.add(right[e]);
+				stack.add(left[e]);
+			}
+		}
+		return Arrays.copyOf(result.items, result.size);
+	}
+
+	/**
+	 * Estimates how useful it is to contract the node now, lower is better
+	 */
+	private double priority(int v) {
+		int shortcuts = contract(v, true);
+		int removed = gather(in[v], v, true, inNodes, inEdges) + gather(out[v], v, false, outNodes, outEdges);
+		return shortcuts - removed + deletedNeighbours[v];
+	}
+
+	/**
+	 * Adds (or counts) the shortcuts needed to contract a node. For every remaining in-neighbour u a
+	 * limited search that avoids v looks for a path to each out-neighbour w that is as cheap as
+	 * u -> v -> w, a witness. Pairs without a witness get a shortcut
+	 * @param v - the node to contract
+	 * @param simulate - true to only count the shortcuts
+	 * @return - the number of shortcuts needed
+	 */
+	private int contract(int v, boolean simulate) {
+		int inCount = gather(in[v], v, true, inNodes, inEdges);
+		int outCount = gather(out[v], v, false, outNodes, outEdges);
+		if (inCount == 0 || outCount == 0) return 0;
+		double maxOut = 0;
+		for (int j = 0; j < outCount; j++) maxOut = Math.max(maxOut, weight[outEdges[j]]);
+		int shortcuts = 0;
+		SearchScratch scratch = SearchScratch.local();
+		for (int i = 0; i < inCount; i++) {
+			int u = inNodes[i];
+			double toV = weight[inEdges[i]];
+			witnessSearch(scratch, u, v, toV + maxOut, simulate ? SIMULATED_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+			for (int j = 0; j < outCount; j++) {
+				int w = outNodes[j];
+				if (w == u) continue;
+				double via = toV + weight[outEdges[j]];
+				if (scratch.distance(w) > via) {
+					shortcuts++;
+					if (!simulate) addEdge(u, w, via, inEdges[i], outEdges[j]);
+				}
+			}
+		}
+		return shortcuts;
+	}
+
+	/**
+	 * Dijkstra from u over the remaining nodes without v, stopped at the cost limit or after
+	 * settleLimit nodes. Reached nodes keep an upper bound on their cost in the scratch
+	 */
+	private void witnessSearch(SearchScratch scratch, int u, int v, double limit, int settleLimit) {
+		scratch.reset(rank.length);
+		scratch.relax(u, 0, -1);
+		int settled = 0;
+		while (!scratch.heap.isEmpty() && scratch.heap.peekKey() <= limit && settled++ < settleLimit) {
+			int x = scratch.settleNext();
+			double cost = scratch.dist[x];
+			IntList edges = out[x];
+			for (int i = 0; i < edges.size; i++) {
+				int e = edges.items[i];
+				int y = to[e];
+				if (y != v && !contracted[y]) scratch.relax(y, cost + weight[e], e);
+			}
+		}
+	}
+
+	/**
+	 * Collects the remaining neighbours of v with the cheapest edge to (or from) each of them
+	 * @return - the number of neighbours written to nodes and edges
+	 */
+	private int gather(IntList list, int v, boolean incoming, int[] nodes, int[] edges) {
+		markEpoch++;
+		int count = 0;
+		for (int i = 0; i < list.size; i++) {
+			int e = list.items[i];
+			int w = incoming ? from[e] : to[e];
+			if (w == v || contracted[w]) continue;
+			if (mark[w] != markEpoch) {
+				mark[w] = markEpoch;
+				slot[w] = count;
+				nodes[count] = w;
+				edges[count++] = e;
+			} else if (weight[e] < weight[edges[slot[w]]]) {
+				edges[slot[w]] = e;
+			}
+		}
+		return count;
+	}
+
+	private void addEdge(int u, int w, double cost, int first, int second) {
+		if (edgeCount == from.length) {
+			int size = edgeCount * 2;
+			from = Arrays.copyOf(from, size);
+			to = Arrays.copyOf(to, size);
+			weight = Arrays.copyOf(weight, size);
+			left = Arrays.copyOf(left, size);
+			right = Arrays.copyOf(right, size);
+		}
+		int e = edgeCount++;
+		from[e] = u;
+		to[e] = w;
+		weight[e] = cost;
+		left[e] = first;
+		right[e] = second;
+		if (u != w) { // a flight back to its own airport is never on a shortest path
+			out[u].add(e);
+			in[w].add(e);
+		}
+	}
+
+	/**
+	 * Splits the edges into the upward graph searched from the start and the downward graph
+	 * searched backward from the destination
+	 */
+	private void buildSearchGraph() {
+		int n = rank.length;
+		upOffsets = new int[n + 1];
+		downOffsets = new int[n + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			if (from[e] == to[e]) continue;
+			if (rank[from[e]] < rank[to[e]]) upOffsets[from[e] + 1]++;
+			else downOffsets[to[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			upOffsets[v + 1] += upOffsets[v];
+			downOffsets[v + 1] += downOffsets[v];
+		}
+		upEdges = new int[upOffsets[n]];
+		downEdges = new int[downOffsets[n]];
+		int[] nextUp = Arrays.copyOf(upOffsets, n);
+		int[] nextDown = Arrays.copyOf(downOffsets, n);
+		for (int e = 0; e < edgeCount; e++) {
+			if (from[e] == to[e]) continue;
+			if (rank[from[e]] < rank[to[e]]) upEdges[nextUp[from[e]]++] = e;
+			else downEdges[nextDown[to[e]]++] = e;
+		}
+	}
+
+	/**
+	 * Growable list of ints
+	 */
+	protected static class IntList {
+		int[] items = new int[4];
+		int size = 0;
+
+		void add(int value) {
+			if (size == items.length) items = Arrays.copyOf(items, size * 2);
+			items[size++] = value;
+		}
+
+		void reverse() {
+			for (int i = 0, j = size - 1; i < j; i++, j--) {
+				int tmp = items[i];
+				items[i] = items[j];
+				items[j] = tmp;
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+import java.util.function.ToDoubleFunction;
+
+/**
+ * What a route query minimizes: the cost of every flight under some weighting. Searches don't call
+ * cost() per edge; they get the model's weight of every edge of the FlightNetwork as a primitive
+ * array (see weights). The value(), price and miles models read arrays the network copies out of
+ * the flights when it is built, a linear blend or a custom model is turned into an array that the
+ * network keeps while the model is among the last few used (see FlightNetwork.derivedWeights), and
+ * HOPS, where every flight costs 1, is answered with a breadth-first search. Models don't change,
+ * so queries with different models can run on the same network at once.
+ */
+public final class CostModel {
+
+	private enum Kind { VALUE, PRICE, MILES, HOPS, LINEAR, CUSTOM }
+
+	public static final CostModel VALUE = new CostModel(Kind.VALUE, "value", 0, 0, 0, null); // FlightInterface.value()
+	public static final CostModel PRICE = new CostModel(Kind.PRICE, "price", 1, 0, 0, null); // cheapest
+	public static final CostModel MILES = new CostModel(Kind.MILES, "miles", 0, 1, 0, null); // shortest
+	public static final CostModel HOPS = new CostModel(Kind.HOPS, "hops", 0, 0, 1, null); // fewest flights
+
+	private final Kind kind;
+	private final String name; // shown by toString
+	private final double perDollar; // weight of the price in a linear blend
+	private final double perMile; // weight of the miles in a linear blend
+	private final double perFlight; // fixed cost of every flight in a linear blend
+	private final ToDoubleFunction<FlightInterface> custom; // cost of a flight for a custom model
+
+	private CostModel(Kind kind, String name, double perDollar, double perMile, double perFlight,
+			ToDoubleFunction<FlightInterface> custom) {
+		this.kind = kind;
+		this.name = name;
+		this.perDollar = perDollar;
+		this.perMile = perMile;
+		this.perFlight = perFlight;
+		this.custom = custom;
+	}
+
+	/**
+	 * Returns the model costing a flight perDollar * price + perMile * miles + perFlight
+	 * @throws IllegalArgumentException - if a factor is negative, which would make costs negative
+	 */
+	public static CostModel linear(double perDollar, double perMile, double perFlight) {
+		if (perDollar < 0 || perMile < 0 || perFlight < 0) {
+			throw new IllegalArgumentException("Cost factors can't be negative");
+		}
+		if (perMile == 0 && perFlight == 0 && perDollar == 1) return PRICE;
+		if (perDollar == 0 && perFlight == 0 && perMile == 1) return MILES;
+		return new CostModel(Kind.LINEAR, "linear(" + perDollar + "/$, " + perMile + "/mile, " + perFlight + "/flight)",
+				perDollar, perMile, perFlight, null);
+	}
+
+	/**
+	 * Returns a model with any cost per flight. The function is called once per flight of a network,
+	 * and must not return negative costs
+	 * @param name - the name of the model, for toString
+	 * @param cost - the cost of a flight
+	 */
+	public static CostModel custom(String name, ToDoubleFunction<FlightInterface> cost) {
+		return new CostModel(Kind.CUSTOM, name, 0, 0, 0, cost);
+	}
+
+	/**
+	 * Returns the cost of one flight under this model
+	 */
+	public double cost(FlightInterface flight) {
+		switch (kind) {
+			case VALUE:
+				return flight.value();
+			case HOPS:
+				return 1;
+			case CUSTOM:
+				return custom.applyAsDouble(flight);
+			default:
+				return perDollar * flight.getPrice() + perMile * flight.getMiles() + perFlight;
+		}
+	}
+
+	/**
+	 * Returns true if every flight costs the same, so a breadth-first search finds the cheapest route
+	 */
+	public boolean isUnitCost() {
+		return kind == Kind.HOPS;
+	}
+
+	/**
+	 * Returns the weight of every edge of a network under this model. The array is shared, don't
+	 * change it
+	 */
+	double[] weights(FlightNetwork net) {
+		switch (kind) {
+			case VALUE:
+				return net.weights;
+			case PRICE:
+				return net.prices;
+			case MILES:
+				return net.miles;
+			default:
+				return net.derivedWeights(this);
+		}
+	}
+
+	/**
+	 * Computes the weight of every edge of a network, for the models the network has no column for
+	 */
+	double[] computeWeights(FlightNetwork net) {
+		double[] weights = new double[net.getEdgeCount()];
+		for (int e = 0; e < weights.length; e++) {
+			double w = kind == Kind.CUSTOM ? custom.applyAsDouble(net.flights[e])
+					: perDollar * net.prices[e] + perMile * net.miles[e] + perFlight;
+			if (!(w >= 0)) throw new IllegalArgumentException(name + " gives " + net.flights[e] + " the cost " + w);
+			weights[e] = w;
+		}
+		return weights;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CostModel)) return false;
+		CostModel other = (CostModel) o;
+		// custom models are only equal to themselves, their functions can't be compared
+		return kind != Kind.CUSTOM && kind == other.kind && perDollar == other.perDollar
+				&& perMile == other.perMile && perFlight == other.perFlight;
+	}
+
+	@Override
+	public int hashCode() {
+		if (kind == Kind.CUSTOM) return System.identityHashCode(this);
+		return ((kind.hashCode() * 31 + Double.hashCode(perDollar)) * 31 + Double.hashCode(perMile)) * 31
+				+ Double.hashCode(perFlight);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
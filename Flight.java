@@ -23,6 +23,28 @@ public class Flight implements FlightInterface{
         return destination.getName();
     }
 
+    public AirportInterface getOrigin() {
+        return origin;
+    }
+
+    public AirportInterface getDestination() {
+        return destination;
+    }
+
+    /**
+     * Returns the dense id of the origin airport (see Airport.getId), -1 if it has none
+     */
+    public int getOriginId() {
+        return origin instanceof Airport ? ((Airport) origin).getId() : -1;
+    }
+
+    /**
+     * Returns the dense id of the destination airport (see Airport.getId), -1 if it has none
+     */
+    public int getDestinationId() {
+        return destination instanceof Airport ? ((Airport) destination).getId() : -1;
+    }
+
     @Override
     public double getPrice() {
         return price;
@@ -1,18 +1,46 @@
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 public class FlightApp {
 
-  public static void main(String[] args) throws FileNotFoundException {
+  public static void main(String[] args) throws IOException, InterruptedException {
+
+    // run with "batch <flights.csv> <queries.csv> [options]" to answer a file of queries without the menu
+    if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+      runBatch(args);
+      return;
+    }
 
  // Use data wrangler's code to load flight data
-    FlightReaderInterface flightReader = new FlightReader();
+    // (the memory-mapped reader parses the file in parallel chunks, see MappedFlightReader)
+    FlightReaderInterface flightReader = new MappedFlightReader();
     
     // Use algorithm engineer's code to store and search for data
-    Graph<String, FlightInterface> graph = new Graph<String,FlightInterface>();
+    // (run with the argument "csr" to route over the frozen CSR graph instead)
+    List<String> options = Arrays.asList(args);
+    GraphADT<String, FlightInterface> graph;
+    if (options.contains("csr")) {
+      graph = new CSRGraph();
+    } else {
+      graph = new Graph<String,FlightInterface>();
+    }
     
     // Use the backend developer's code to manage all app specific processing
-    BackendInterface backend = new BackendBD(graph,flightReader);
+    BackendBD backend = new BackendBD(graph,flightReader);
+    // (run with the argument "snapshot" to write a binary snapshot next to every csv loaded, which
+    // later loads of the csv read instead)
+    backend.setSnapshotCaching(options.contains("snapshot"));
     
     // Use the frontend developer's code to drive the text-base user interface
     Scanner scanner = new Scanner(System.in);
@@ -24,4 +52,59 @@ public class FlightApp {
     
   }
 
+  /**
+   * Loads a flights file once and answers every origin,destination[,k] line of a query file with
+   * BatchQueryRunner. Options: -out <file> (results, .json for JSON, standard out if left out),
+   * -format csv|json, -threads <n> (default: one per processor), -k <n> (routes per query, default
+   * 3), csr to route over the CSR graph and snapshot to write a binary snapshot of the csv (see
+   * BackendBD.setSnapshotCaching). The throughput and latency summary goes to standard error when
+   * the results go to standard out
+   */
+  private static void runBatch(String[] args) throws IOException, InterruptedException {
+    if (args.length < 3) {
+      System.err.println("Usage: java FlightApp batch <flights.csv> <queries.csv> [-out <file>] "
+          + "[-format csv|json] [-threads <n>] [-k <n>] [csr] [snapshot]");
+      System.exit(2);
+    }
+    String out = null;
+    String format = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int k = 3;
+    boolean csr = false;
+    boolean snapshot = false;
+    for (int i = 3; i < args.length; i++) {
+      switch (args[i]) {
+        case "-out": out = args[++i]; break;
+        case "-format": format = args[++i]; break;
+        case "-threads": threads = Integer.parseInt(args[++i]); break;
+        case "-k": k = Integer.parseInt(args[++i]); break;
+        case "csr": csr = true; break;
+        case "snapshot": snapshot = true; break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    if (format == null) {
+      format = out != null && out.toLowerCase().endsWith(".json") ? "json" : "csv";
+    }
+    BatchQueryRunner.Format outputFormat = BatchQueryRunner.Format.valueOf(format.toUpperCase());
+
+    GraphADT<String, FlightInterface> graph = csr ? new CSRGraph() : new Graph<String,FlightInterface>();
+    BackendBD backend = new BackendBD(graph, new MappedFlightReader());
+    backend.setSnapshotCaching(snapshot);
+    long start = System.nanoTime();
+    backend.loadData(args[1]);
+    long loadNanos = System.nanoTime() - start;
+
+    BatchQueryRunner runner = new BatchQueryRunner(backend, threads, k);
+    BatchQueryRunner.Summary summary;
+    try (Reader queries = new InputStreamReader(new FileInputStream(args[2]), StandardCharsets.UTF_8);
+        Writer results = new BufferedWriter(new OutputStreamWriter(
+            out == null ? System.out : new FileOutputStream(out), StandardCharsets.UTF_8), 1 << 16)) {
+      summary = runner.run(queries, results, outputFormat);
+    }
+    PrintStream report = out == null ? System.err : System.out;
+    report.printf("loaded %s in %.2f s, %d threads%n", args[1], loadNanos / 1e9, threads);
+    report.println(summary);
+  }
+
 }
@@ -0,0 +1,109 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All the flights between one origin and one destination, kept in an array sorted by value() so
+ * the cheapest is always first. Flights with the same value stay in the order they were added. Most
+ * airport pairs have a single flight, so the array starts with room for one and grows by doubling.
+ */
+public class FlightBucket {
+
+	private FlightInterface[] flights = new FlightInterface[1]; // sorted by value(), cheapest first
+	private int size = 0; // number of flights in the bucket
+
+	/**
+	 * Makes a bucket holding one flight
+	 */
+	public FlightBucket(FlightInterface first) {
+		flights[size++] = first;
+	}
+
+	/**
+	 * Adds a flight after every flight that is as cheap or cheaper. A flight equal to one already in
+	 * the bucket is not added again
+	 * @return - true if the flight was added
+	 */
+	public boolean add(FlightInterface flight) {
+		if (contains(flight)) return false;
+		double value = flight.value();
+		int at = size;
+		while (at > 0 && flights[at - 1].value() > value) at--;
+		if (size == flights.length) flights = Arrays.copyOf(flights, size * 2);
+		System.arraycopy(flights, at, flights, at + 1, size - at);
+		flights[at] = flight;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes a flight (or one equal to it)
+	 * @return - true if it was in the bucket
+	 */
+	public boolean remove(FlightInterface flight) {
+		for (int i = 0; i < size; i++) {
+			if (flights[i] == flight || flights[i].equals(flight)) {
+				System.arraycopy(flights, i + 1, flights, i, size - i - 1);
+				flights[--size] = null;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the flight (or one equal to it) is in the bucket
+	 */
+	public boolean contains(FlightInterface flight) {
+		for (int i = 0; i < size; i++) {
+			if (flights[i] == flight || flights[i].equals(flight)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the cheapest flight, null if the bucket is empty
+	 */
+	public FlightInterface best() {
+		return size == 0 ? null : flights[0];
+	}
+
+	/**
+	 * Returns the i-th cheapest flight
+	 */
+	public FlightInterface get(int i) {
+		if (i >= size) throw new IndexOutOfBoundsException("Flight " + i + " of " + size);
+		return flights[i];
+	}
+
+	/**
+	 * Returns the number of flights
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the bucket has no flights left
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns a read-only view of the flights, cheapest first
+	 */
+	public List<FlightInterface> asList() {
+		return new AbstractList<FlightInterface>() {
+			@Override
+			public FlightInterface get(int i) {
+				return FlightBucket.this.get(i);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
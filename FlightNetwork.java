@@ -0,0 +1,475 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, int-indexed copy of a flight graph in compressed sparse row (CSR) form. Airports
+ * are numbered 0..getNodeCount()-1 and the flights leaving airport v are the edge ids
+ * offsets[v]..offsets[v+1]-1. The flights entering airport v are listed the same way through
+ * inOffsets and inEdges. Weights are copied out of FlightInterface.value() once so searches only
+ * read primitive arrays, and so are the prices and miles for the other cost models (see CostModel).
+ * Nothing is changed after construction but the small cache of derived weights, which is
+ * synchronized, so one network can be searched from any number of threads at once.
+ */
+public class FlightNetwork {
+
+	final String[] names; // airport code of every node id
+	final HashMap<String, Integer> ids; // node id of every airport code
+
+	final int[] offsets; // first leaving edge of every node, length nodes+1
+	final int[] origins; // origin node of every edge
+	final int[] targets; // destination node of every edge
+	final double[] weights; // FlightInterface.value() of every edge
+	final FlightInterface[] flights; // the flight behind every edge
+	final double[] prices; // price of every edge
+	final double[] miles; // miles of every edge
+	private static final int DERIVED_MODELS = 4; // most derived weight arrays kept per network
+	// weights of every edge under the cost models that have no column above, for the ones used last
+	private final LinkedHashMap<CostModel, double[]> derived = new LinkedHashMap<CostModel, double[]>(8, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CostModel, double[]> eldest) {
+			return size() > DERIVED_MODELS;
+		}
+	};
+
+	final int[] inOffsets; // first entering edge of every node in inEdges, length nodes+1
+	final int[] inEdges; // edge ids grouped by destination node
+	private final LongHashMap<Integer> cheapest; // cheapest edge of every (origin, destination) pair
+
+	/**
+	 * Builds the network from a list of airport codes and the flights between them. Flights whose
+	 * origin or destination is not in the list are left out
+	 * @param airports - the airport codes, a node id is the index of its code in this list
+	 * @param edges - the flights to store
+	 */
+	public FlightNetwork(List<String> airports, List<? extends FlightInterface> edges) {
+		this(airports.toArray(new String[airports.size()]), edges, null, null);
+	}
+
+	/**
+	 * Builds the network from airports and flights that already carry dense ids (see Airport.getId),
+	 * so no airport code is hashed per flight. A flight whose airports aren't the ones at their ids in
+	 * the list is looked up by code instead, and left out if its codes aren't in the list either
+	 * @param airports - the airports, a node id is the index of its airport in this list
+	 * @param edges - the flights to store
+	 */
+	public static FlightNetwork fromAirports(List<? extends AirportInterface> airports,
+			List<? extends FlightInterface> edges) {
+		int n = airports.size();
+		String[] names = new String[n];
+		for (int i = 0; i < n; i++) names[i] = airports.get(i).getName();
+		int[] from = new int[edges.size()];
+		int[] to = new int[edges.size()];
+		int m = 0;
+		for (FlightInterface f : edges) {
+			from[m] = -2; // not resolved by id, the constructor looks the codes up
+			if (f instanceof Flight) {
+				Flight flight = (Flight) f;
+				int u = flight.getOriginId();
+				int v = flight.getDestinationId();
+				if (u >= 0 && u < n && v >= 0 && v < n && airports.get(u) == flight.getOrigin()
+						&& airports.get(v) == flight.getDestination()) {
+					from[m] = u;
+					to[m] = v;
+				}
+			}
+			m++;
+		}
+		return new FlightNetwork(names, edges, from, to);
+	}
+
+	/**
+	 * Builds the network
+	 * @param airports - the airport code of every node id
+	 * @param edges - the flights to store
+	 * @param from - origin node of every flight, -2 to look it up by code, null to look all up
+	 * @param to - destination node of every flight, read where from isn't -2
+	 */
+	private FlightNetwork(String[] airports, List<? extends FlightInterface> edges, int[] from, int[] to) {
+		int n = airports.length;
+		names = airports;
+		ids = new HashMap<String, Integer>(n * 2);
+		for (int i = 0; i < n; i++) ids.put(names[i], i);
+
+		// count the flights leaving and entering each airport
+		if (from == null) {
+			from = new int[edges.size()];
+			to = new int[edges.size()];
+			Arrays.fill(from, -2);
+		}
+		int m = 0;
+		offsets = new int[n + 1];
+		inOffsets = new int[n + 1];
+		for (FlightInterface f : edges) {
+			if (from[m] == -2) {
+				Integer u = ids.get(f.getOriginAirport());
+				Integer v = ids.get(f.getDestinationAirport());
+				from[m] = u == null || v == null ? -1 : u;
+				to[m] = v == null ? -1 : v;
+			}
+			if (from[m] >= 0) {
+				offsets[from[m] + 1]++;
+				inOffsets[to[m] + 1]++;
+			}
+			m++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+			inOffsets[i + 1] += inOffsets[i];
+		}
+
+		// place every flight in the slot of its origin, keeping the order they were given in
+		int edgeCount = offsets[n];
+		origins = new int[edgeCount];
+		targets = new int[edgeCount];
+		weights = new double[edgeCount];
+		prices = new double[edgeCount];
+		miles = new double[edgeCount];
+		flights = new FlightInterface[edgeCount];
+		inEdges = new int[edgeCount];
+		int[] next = new int[n];
+		int[] nextIn = new int[n];
+		int i = 0;
+		for (FlightInterface f : edges) {
+			int u = from[i];
+			int v = to[i];
+			i++;
+			if (u < 0) continue;
+			int e = offsets[u] + next[u]++;
+			origins[e] = u;
+			targets[e] = v;
+			weights[e] = f.value();
+			prices[e] = f.getPrice();
+			miles[e] = f.getMiles();
+			flights[e] = f;
+		}
+		for (int e = 0; e < edgeCount; e++) {
+			int v = targets[e];
+			inEdges[inOffsets[v] + nextIn[v]++] = e;
+		}
+		cheapest = indexPairs();
+	}
+
+	/**
+	 * Wraps arrays that already hold a network in the layout of the fields, as read back from a
+	 * BinarySnapshot. Only the origin of every edge and the code lookup are rebuilt
+	 */
+	FlightNetwork(String[] names, int[] offsets, int[] targets, double[] weights, FlightInterface[] flights,
+			int[] inOffsets, int[] inEdges) {
+		int n = names.length;
+		this.names = names;
+		this.ids = new HashMap<String, Integer>(n * 2);
+		for (int i = 0; i < n; i++) ids.put(names[i], i);
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.flights = flights;
+		this.prices = new double[flights.length];
+		this.miles = new double[flights.length];
+		for (int e = 0; e < flights.length; e++) {
+			prices[e] = flights[e].getPrice();
+			miles[e] = flights[e].getMiles();
+		}
+		this.inOffsets = inOffsets;
+		this.inEdges = inEdges;
+		this.origins = new int[targets.length];
+		for (int u = 0; u < n; u++)
+			Arrays.fill(origins, offsets[u], offsets[u + 1], u);
+		this.cheapest = indexPairs();
+	}
+
+	/**
+	 * Maps every airport pair with a flight to its cheapest edge (the first one of equal weight)
+	 */
+	private LongHashMap<Integer> indexPairs() {
+		LongHashMap<Integer> index = new LongHashMap<Integer>(targets.length);
+		for (int e = 0; e < targets.length; e++) {
+			long key = LongHashMap.pairKey(origins[e], targets[e]);
+			Integer best = index.get(key);
+			if (best == null || weights[e] < weights[best]) index.put(key, e);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of airports
+	 */
+	public int getNodeCount() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the number of flights
+	 */
+	public int getEdgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the node id of an airport code, or -1 if the airport is not in the network
+	 */
+	public int indexOf(String airport) {
+		Integer id = ids.get(airport);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the node id of an airport code. Throws if the airport is not in the network
+	 */
+	public int requireIndex(String airport) {
+		Integer id = ids.get(airport);
+		if (id == null) throw new NoSuchElementException(airport + " is not in the graph");
+		return id;
+	}
+
+	/**
+	 * Returns the airport code of a node id
+	 */
+	public String nameOf(int node) {
+		return names[node];
+	}
+
+	/**
+	 * Returns the flight stored for an edge id
+	 */
+	public FlightInterface flightOf(int edge) {
+		return flights[edge];
+	}
+
+	/**
+	 * Returns the airport codes in node id order
+	 */
+	public List<String> getAirports() {
+		return Arrays.asList(names.clone());
+	}
+
+	/**
+	 * Returns the flights in edge id order
+	 */
+	public List<FlightInterface> getFlights() {
+		return new ArrayList<FlightInterface>(Arrays.asList(flights));
+	}
+
+	/**
+	 * Returns the cheapest flight between two airports. Throws if there is none
+	 */
+	public FlightInterface getFlight(String pred, String succ) {
+		int u = indexOf(pred);
+		int v = indexOf(succ);
+		int e = u < 0 || v < 0 ? -1 : findEdge(u, v);
+		if (e < 0) throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+		return flights[e];
+	}
+
+	/**
+	 * Returns the weight of every edge under a cost model that has no column of its own. The arrays
+	 * of the last few models used are kept, so a blend asked for again and again is computed once,
+	 * while one-off blends and custom models (equal only to themselves) don't pile up an array each
+	 * for the life of the network. The weights are computed outside the lock; two threads asking
+	 * for a new model at once may both compute them
+	 */
+	double[] derivedWeights(CostModel model) {
+		synchronized (derived) {
+			double[] weights = derived.get(model);
+			if (weights != null) return weights;
+		}
+		double[] weights = model.computeWeights(this);
+		synchronized (derived) {
+			derived.put(model, weights);
+		}
+		return weights;
+	}
+
+	/**
+	 * Finds the cheapest path between two airports with Dijkstra's algorithm, stopping as soon as
+	 * the destination is settled
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @return - the airports on the path with its cost
+	 */
+	public Path shortestPath(String start, String end) {
+		return shortestPath(start, end, CostModel.VALUE);
+	}
+
+	/**
+	 * Same as shortestPath(start, end), but minimizes the cost of the flights under a cost model. The
+	 * search reads the model's weight array; under CostModel.HOPS it is a breadth-first search
+	 * @param model - what the path minimizes, its cost is the cost of the path
+	 */
+	public Path shortestPath(String start, String end, CostModel model) {
+		int source = indexOf(start);
+		int target = indexOf(end);
+		if (source < 0 || target < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		if (model.isUnitCost()) return fewestFlights(source, target);
+		double[] weights = model.weights(this);
+		SearchScratch scratch = SearchScratch.local();
+		scratch.reset(names.length);
+		scratch.relax(source, 0, -1);
+		while (!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			if (u == target) return toPath(scratch, target, null, -1, scratch.dist[u]);
+			double cost = scratch.dist[u];
+			for (int e = offsets[u]; e < offsets[u + 1]; e++)
+				scratch.relax(targets[e], cost + weights[e], e);
+		}
+		throw new NoSuchElementException("There is not path for the start and end");
+	}
+
+	/**
+	 * Searches from one airport to every airport, for one-to-many queries: the costs to all of them
+	 * come out of a single search
+	 * @param start - the origin
+	 * @param model - what the paths minimize
+	 * @return - the costs and predecessor edges of every airport
+	 */
+	public ShortestPathTree shortestPathTree(String start, CostModel model) {
+		int source = requireIndex(start);
+		SearchScratch scratch = SearchScratch.local();
+		settleAll(source, model.weights(this), scratch);
+		double[] cost = new double[names.length];
+		int[] predEdge = new int[names.length];
+		for (int v = 0; v < names.length; v++) {
+			cost[v] = scratch.distance(v);
+			predEdge[v] = scratch.predecessor(v);
+		}
+		return new ShortestPathTree(this, source, cost, predEdge);
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from a node until every reachable node is settled, leaving the
+	 * distances and predecessor edges in the scratch
+	 */
+	void settleAll(int source, double[] weights, SearchScratch scratch) {
+		scratch.reset(names.length);
+		scratch.relax(source, 0, -1);
+		while (!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			double cost = scratch.dist[u];
+			for (int e = offsets[u]; e < offsets[u + 1]; e++)
+				scratch.relax(targets[e], cost + weights[e], e);
+		}
+	}
+
+	/**
+	 * Breadth-first search for the path with the fewest flights. Nodes are settled as soon as they
+	 * are reached, so the scratch heap never holds more than one node
+	 */
+	private Path fewestFlights(int source, int target) {
+		SearchScratch scratch = SearchScratch.local();
+		scratch.reset(names.length);
+		scratch.relax(source, 0, -1);
+		scratch.settleNext();
+		int[] queue = new int[names.length];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int u = queue[head++];
+			if (u == target) return toPath(scratch, target, null, -1, scratch.dist[u]);
+			double hops = scratch.dist[u] + 1;
+			for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+				int v = targets[e];
+				if (scratch.isReached(v)) continue;
+				scratch.relax(v, hops, e);
+				scratch.settleNext(); // reached in order of hops, so it is final already
+				queue[tail++] = v;
+			}
+		}
+		throw new NoSuchElementException("There is not path for the start and end");
+	}
+
+	/**
+	 * Same as shortestPath, but searches forward from the start and backward from the destination
+	 * in turns, stopping when the two smallest queued costs add up to the best path found
+	 */
+	public Path shortestPathBidirectional(String start, String end) {
+		int source = indexOf(start);
+		int target = indexOf(end);
+		if (source < 0 || target < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		if (source == target) return shortestPath(start, end);
+		SearchScratch forward = SearchScratch.local();
+		SearchScratch backward = SearchScratch.localReverse(); // predecessors are the next edge toward the end
+		forward.reset(names.length);
+		backward.reset(names.length);
+		forward.relax(source, 0, -1);
+		backward.relax(target, 0, -1);
+		double best = Double.POSITIVE_INFINITY;
+		int meetEdge = -1; // edge where the two halves of the best path join
+		boolean forwardTurn = true;
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+			if (forward.heap.peekKey() + backward.heap.peekKey() >= best) break;
+			if (forwardTurn) {
+				int u = forward.settleNext();
+				double cost = forward.dist[u];
+				for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+					int v = targets[e];
+					double next = cost + weights[e];
+					forward.relax(v, next, e);
+					if (backward.isReached(v) && next + backward.dist[v] < best) {
+						best = next + backward.dist[v];
+						meetEdge = e;
+					}
+				}
+			} else {
+				int v = backward.settleNext();
+				double cost = backward.dist[v];
+				for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+					int e = inEdges[i];
+					int u = origins[e];
+					double next = cost + weights[e];
+					backward.relax(u, next, e);
+					if (forward.isReached(u) && next + forward.dist[u] < best) {
+						best = next + forward.dist[u];
+						meetEdge = e;
+					}
+				}
+			}
+			forwardTurn = !forwardTurn;
+		}
+		if (meetEdge < 0) throw new NoSuchElementException("There is not path for the start and end");
+		return toPath(forward, origins[meetEdge], backward, meetEdge, best);
+	}
+
+	/**
+	 * Reads a path out of the predecessor edges of one search, or of a forward and a backward
+	 * search joined by an edge
+	 */
+	private Path toPath(SearchScratch forward, int last, SearchScratch backward, int meetEdge, double cost) {
+		LinkedList<String> path = new LinkedList<String>();
+		LinkedList<FlightInterface> taken = new LinkedList<FlightInterface>();
+		int v = last;
+		path.addFirst(names[v]);
+		while (forward.predecessor(v) >= 0) {
+			int e = forward.predecessor(v);
+			taken.addFirst(flights[e]);
+			v = origins[e];
+			path.addFirst(names[v]);
+		}
+		if (backward != null) {
+			taken.addLast(flights[meetEdge]);
+			for (v = targets[meetEdge]; ; v = targets[backward.predecessor(v)]) {
+				path.addLast(names[v]);
+				if (backward.predecessor(v) < 0) break;
+				taken.addLast(flights[backward.predecessor(v)]);
+			}
+		}
+		return new Path(path, cost, taken);
+	}
+
+	/**
+	 * Returns the cheapest edge id from one node to another, or -1 if there is none
+	 */
+	public int findEdge(int pred, int succ) {
+		Integer e = cheapest.get(LongHashMap.pairKey(pred, succ));
+		return e == null ? -1 : e;
+	}
+}
@@ -2,37 +2,90 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 
 public class FlightReader implements FlightReaderInterface{
 
+    // the lists are shared by every FlightReader, so these are caught up with them before each read
+    private final HashMap<String, Airport> registry = new HashMap<>(); // the one Airport of every code
+    private final HashSet<FlightInterface> seen = new HashSet<>(); // flights already in the list
+    private int syncedAirports = 0; // airports of the list already in the registry
+    private int syncedFlights = 0; // flights of the list already in seen
+
     @Override
     public void readFlightsFromFile(String filename) throws FileNotFoundException {
         BufferedReader br = new BufferedReader(new FileReader(filename));
+        long start = System.nanoTime();
+        sync();
+        int added = 0;
         try {
             String text;
             while ((text = br.readLine()) != null) {
                 try {
                     String[] sections = text.split(",");
-                    Airport origin = new Airport(sections[0]);
-                    Airport destination = new Airport(sections[1]);
-                    if (!airports.contains(origin)) {
-                        airports.add(origin);
-                    }
-                    if (!airports.contains(destination)) {
-                        airports.add(destination);
-                    }
-                    Flight flight = new Flight(origin, destination, Double.parseDouble(sections[2]),
-                            Double.parseDouble(sections[3]));
-                    if (!flights.contains(flight)) {
+                    Airport origin = intern(sections[0]);
+                    Airport destination = intern(sections[1]);
+                    // rows of the extended schema carry a departure and an arrival time after the miles
+                    Flight flight = ScheduledFlight.fromColumns(origin, destination, Double.parseDouble(sections[2]),
+                            Double.parseDouble(sections[3]), sections);
+                    if (seen.add(flight)) {
                         flights.add(flight);
+                        added++;
                     }
                 }catch (Exception ignored) {}
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        syncedAirports = airports.size(); // what this read added is in the registry already
+        syncedFlights = flights.size();
+        PerformanceMetrics.phase("reader.readFlightsFromFile", System.nanoTime() - start, added);
+    }
+
+    /**
+     * Adds what other readers put in the shared lists since the last read to the registry and the
+     * seen set, so no airport or flight is listed twice. Starts over if the lists got shorter
+     */
+    private void sync() {
+        if (airports.size() < syncedAirports || flights.size() < syncedFlights) {
+            registry.clear();
+            seen.clear();
+            syncedAirports = 0;
+            syncedFlights = 0;
+        }
+        for (; syncedAirports < airports.size(); syncedAirports++) {
+            AirportInterface airport = airports.get(syncedAirports);
+            if (airport instanceof Airport) {
+                registry.putIfAbsent(airport.getName(), (Airport) airport);
+            }
+        }
+        for (; syncedFlights < flights.size(); syncedFlights++) {
+            seen.add(flights.get(syncedFlights));
+        }
+    }
+
+    /**
+     * Returns the Airport of a code, making it and adding it to the airport list the first time. Its
+     * id is its index in the list
+     */
+    private Airport intern(String code) {
+        Airport airport = registry.get(code);
+        if (airport == null) {
+            airport = new Airport(code, airports.size());
+            registry.put(code, airport);
+            airports.add(airport);
+        }
+        return airport;
+    }
+
+    /**
+     * Returns the Airport read for a code, null if no flight named it
+     */
+    public Airport getAirport(String code) {
+        return registry.get(code);
     }
 
     public List<AirportInterface> getAirports() {
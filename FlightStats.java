@@ -0,0 +1,295 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Statistics of a set of flights, kept up to date as flights are added and removed instead of being
+ * found by scanning. The flights are indexed by price and by miles in sorted maps, so the cheapest,
+ * dearest, shortest and longest flight and every range of prices or miles are found in O(log n);
+ * every airport also keeps its degrees and its outgoing flights by price, for fare ranges and
+ * queries like "the flights under $X from Y". Percentiles read sorted columns of the values, which
+ * are rebuilt in O(n) by the first percentile query after a change.
+ *
+ * Flights with the same value are kept in the order they were added, so the minimum is the first
+ * cheapest flight added and the maximum the first dearest, like a scan in load order finds them.
+ * Methods lock the whole index, so readers can use it while updates are applied.
+ */
+public class FlightStats {
+
+	/**
+	 * Flights sorted by one value, with a sorted column of the values for percentiles
+	 */
+	private static class Column {
+		private final ToDoubleFunction<FlightInterface> value; // what the flights are sorted by
+		private final TreeMap<Double, List<FlightInterface>> sorted = new TreeMap<Double, List<FlightInterface>>();
+		private int size = 0; // flights in the column
+		private double[] values = null; // every value in order, null after a change
+
+		Column(ToDoubleFunction<FlightInterface> value) {
+			this.value = value;
+		}
+
+		void add(FlightInterface flight) {
+			sorted.computeIfAbsent(value.applyAsDouble(flight), v -> new ArrayList<FlightInterface>(1)).add(flight);
+			size++;
+			values = null;
+		}
+
+		boolean remove(FlightInterface flight) {
+			double key = value.applyAsDouble(flight);
+			List<FlightInterface> same = sorted.get(key);
+			if (same == null || !same.remove(flight)) return false;
+			if (same.isEmpty()) sorted.remove(key);
+			size--;
+			values = null;
+			return true;
+		}
+
+		FlightInterface first() {
+			return sorted.isEmpty() ? null : sorted.firstEntry().getValue().get(0);
+		}
+
+		FlightInterface last() {
+			return sorted.isEmpty() ? null : sorted.lastEntry().getValue().get(0);
+		}
+
+		/**
+		 * Returns the flights with values from low up to high (both included), in order
+		 */
+		List<FlightInterface> between(double low, double high) {
+			List<FlightInterface> found = new ArrayList<FlightInterface>();
+			if (low > high) return found;
+			for (List<FlightInterface> same : sorted.subMap(low, true, high, true).values()) found.addAll(same);
+			return found;
+		}
+
+		List<FlightInterface> all() {
+			List<FlightInterface> found = new ArrayList<FlightInterface>(size);
+			for (List<FlightInterface> same : sorted.values()) found.addAll(same);
+			return found;
+		}
+
+		double[] values() {
+			if (values == null) {
+				double[] column = new double[size];
+				int i = 0;
+				for (Map.Entry<Double, List<FlightInterface>> e : sorted.entrySet()) {
+					for (int n = e.getValue().size(); n > 0; n--) column[i++] = e.getKey();
+				}
+				values = column;
+			}
+			return values;
+		}
+
+		/**
+		 * Returns the nearest-rank percentile of the values, NaN when there are none
+		 */
+		double percentile(double p) {
+			if (p < 0 || p > 100) throw new IllegalArgumentException("Percentile " + p + " is not between 0 and 100");
+			double[] column = values();
+			if (column.length == 0) return Double.NaN;
+			int rank = (int) Math.ceil(p / 100 * column.length);
+			return column[Math.max(0, rank - 1)];
+		}
+	}
+
+	/**
+	 * The flights of one airport
+	 */
+	private static class AirportStats {
+		int inDegree = 0; // flights into the airport
+		final Column out = new Column(FlightInterface::getPrice); // flights out of it by price
+	}
+
+	private final Column byPrice = new Column(FlightInterface::getPrice);
+	private final Column byMiles = new Column(FlightInterface::getMiles);
+	private final HashMap<String, AirportStats> airports = new HashMap<String, AirportStats>();
+
+	/**
+	 * Adds a flight. The caller makes sure it isn't in the index already
+	 */
+	public synchronized void add(FlightInterface flight) {
+		byPrice.add(flight);
+		byMiles.add(flight);
+		airport(flight.getOriginAirport()).out.add(flight);
+		airport(flight.getDestinationAirport()).inDegree++;
+	}
+
+	private AirportStats airport(String code) {
+		AirportStats stats = airports.get(code);
+		if (stats == null) {
+			stats = new AirportStats();
+			airports.put(code, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Removes a flight
+	 * @return - true if it was in the index
+	 */
+	public synchronized boolean remove(FlightInterface flight) {
+		if (!byPrice.remove(flight)) return false;
+		byMiles.remove(flight);
+		String origin = flight.getOriginAirport();
+		String destination = flight.getDestinationAirport();
+		airports.get(origin).out.remove(flight);
+		airports.get(destination).inDegree--;
+		for (String code : new String[] { origin, destination }) {
+			AirportStats stats = airports.get(code);
+			if (stats != null && stats.inDegree == 0 && stats.out.size == 0) airports.remove(code);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes every flight
+	 */
+	public synchronized void clear() {
+		byPrice.sorted.clear();
+		byPrice.size = 0;
+		byPrice.values = null;
+		byMiles.sorted.clear();
+		byMiles.size = 0;
+		byMiles.values = null;
+		airports.clear();
+	}
+
+	/**
+	 * Returns the number of flights
+	 */
+	public synchronized int size() {
+		return byPrice.size;
+	}
+
+	/**
+	 * Returns the cheapest flight, null if there are none
+	 */
+	public synchronized FlightInterface getMinimumCost() {
+		return byPrice.first();
+	}
+
+	/**
+	 * Returns the most expensive flight, null if there are none
+	 */
+	public synchronized FlightInterface getMaximumCost() {
+		return byPrice.last();
+	}
+
+	/**
+	 * Returns the shortest flight, null if there are none
+	 */
+	public synchronized FlightInterface getMinimumDistance() {
+		return byMiles.first();
+	}
+
+	/**
+	 * Returns the longest flight, null if there are none
+	 */
+	public synchronized FlightInterface getMaximumDistance() {
+		return byMiles.last();
+	}
+
+	/**
+	 * Returns the price below or at which p percent of the flights are (nearest rank), NaN if there
+	 * are no flights
+	 * @param p - the percentile, from 0 to 100
+	 */
+	public synchronized double pricePercentile(double p) {
+		return byPrice.percentile(p);
+	}
+
+	/**
+	 * Returns the miles below or at which p percent of the flights are, like pricePercentile
+	 */
+	public synchronized double milesPercentile(double p) {
+		return byMiles.percentile(p);
+	}
+
+	/**
+	 * Returns every price in ascending order. The array is shared, don't change it
+	 */
+	public synchronized double[] getSortedPrices() {
+		return byPrice.values();
+	}
+
+	/**
+	 * Returns every miles value in ascending order. The array is shared, don't change it
+	 */
+	public synchronized double[] getSortedMiles() {
+		return byMiles.values();
+	}
+
+	/**
+	 * Returns every flight, cheapest first
+	 */
+	public synchronized List<FlightInterface> flightsByPrice() {
+		return byPrice.all();
+	}
+
+	/**
+	 * Returns every flight, shortest first
+	 */
+	public synchronized List<FlightInterface> flightsByMiles() {
+		return byMiles.all();
+	}
+
+	/**
+	 * Returns the flights priced from low up to high, both included, cheapest first
+	 */
+	public synchronized List<FlightInterface> flightsPricedBetween(double low, double high) {
+		return byPrice.between(low, high);
+	}
+
+	/**
+	 * Returns the flights from low up to high miles long, both included, shortest first
+	 */
+	public synchronized List<FlightInterface> flightsWithMilesBetween(double low, double high) {
+		return byMiles.between(low, high);
+	}
+
+	/**
+	 * Returns the flights out of an airport that cost at most maxPrice, cheapest first
+	 */
+	public synchronized List<FlightInterface> flightsFrom(String airport, double maxPrice) {
+		AirportStats stats = airports.get(airport);
+		if (stats == null) return Collections.emptyList();
+		return stats.out.between(Double.NEGATIVE_INFINITY, maxPrice);
+	}
+
+	/**
+	 * Returns the number of flights out of an airport
+	 */
+	public synchronized int getOutDegree(String airport) {
+		AirportStats stats = airports.get(airport);
+		return stats == null ? 0 : stats.out.size;
+	}
+
+	/**
+	 * Returns the number of flights into an airport
+	 */
+	public synchronized int getInDegree(String airport) {
+		AirportStats stats = airports.get(airport);
+		return stats == null ? 0 : stats.inDegree;
+	}
+
+	/**
+	 * Returns the cheapest flight out of an airport, null if it has none
+	 */
+	public synchronized FlightInterface getCheapestFrom(String airport) {
+		AirportStats stats = airports.get(airport);
+		return stats == null ? null : stats.out.first();
+	}
+
+	/**
+	 * Returns the most expensive flight out of an airport, null if it has none
+	 */
+	public synchronized FlightInterface getDearestFrom(String airport) {
+		AirportStats stats = airports.get(airport);
+		return stats == null ? null : stats.out.last();
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * One change to the flight data: a flight added, removed or given a new price. Updates are read
+ * one per line, in the csv style of the flights file:
+ *
+ *   ADD,origin,destination,price,miles
+ *   REMOVE,origin,destination,price,miles   (that flight)
+ *   REMOVE,origin,destination               (every flight between the two airports)
+ *   REPRICE,origin,destination,price,miles,newPrice
+ *
+ * Blank lines and lines starting with # are not updates.
+ */
+public class FlightUpdate {
+
+	public enum Kind { ADD, REMOVE, REPRICE }
+
+	public final Kind kind; // what the update does
+	public final String origin; // origin airport code
+	public final String destination; // destination airport code
+	public final double price; // price of the flight, NaN for a REMOVE of every flight of the pair
+	public final double miles; // miles of the flight, NaN like price
+	public final double newPrice; // price after a REPRICE, NaN otherwise
+
+	public FlightUpdate(Kind kind, String origin, String destination, double price, double miles, double newPrice) {
+		this.kind = kind;
+		this.origin = origin;
+		this.destination = destination;
+		this.price = price;
+		this.miles = miles;
+		this.newPrice = newPrice;
+	}
+
+	/**
+	 * Returns the update that adds a flight
+	 */
+	public static FlightUpdate add(FlightInterface flight) {
+		return new FlightUpdate(Kind.ADD, flight.getOriginAirport(), flight.getDestinationAirport(),
+				flight.getPrice(), flight.getMiles(), Double.NaN);
+	}
+
+	/**
+	 * Returns the update that removes a flight
+	 */
+	public static FlightUpdate remove(FlightInterface flight) {
+		return new FlightUpdate(Kind.REMOVE, flight.getOriginAirport(), flight.getDestinationAirport(),
+				flight.getPrice(), flight.getMiles(), Double.NaN);
+	}
+
+	/**
+	 * Returns the update that removes every flight between two airports
+	 */
+	public static FlightUpdate removeAll(String origin, String destination) {
+		return new FlightUpdate(Kind.REMOVE, origin, destination, Double.NaN, Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * Returns the update that changes the price of a flight
+	 */
+	public static FlightUpdate reprice(FlightInterface flight, double newPrice) {
+		return new FlightUpdate(Kind.REPRICE, flight.getOriginAirport(), flight.getDestinationAirport(),
+				flight.getPrice(), flight.getMiles(), newPrice);
+	}
+
+	/**
+	 * Returns true if the update is about one flight, false if it removes every flight of the pair
+	 */
+	public boolean isSingleFlight() {
+		return !Double.isNaN(price);
+	}
+
+	/**
+	 * Returns the flight the update names (the flight before a REPRICE), made from new Airports
+	 */
+	public Flight flight() {
+		return new Flight(new Airport(origin), new Airport(destination), price, miles);
+	}
+
+	/**
+	 * Reads an update from one line
+	 * @param line - the line, see the class comment
+	 * @return - the update, null for a blank or comment line
+	 * @throws IllegalArgumentException - if the line is not an update
+	 */
+	public static FlightUpdate parse(String line) {
+		line = line.trim();
+		if (line.isEmpty() || line.startsWith("#")) return null;
+		String[] sections = line.split(",");
+		Kind kind;
+		try {
+			kind = Kind.valueOf(sections[0].trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown update: " + line);
+		}
+		int expected = kind == Kind.REPRICE ? 6 : 5;
+		if (sections.length != expected && !(kind == Kind.REMOVE && sections.length == 3)) {
+			throw new IllegalArgumentException("Wrong number of fields: " + line);
+		}
+		String origin = sections[1].trim();
+		String destination = sections[2].trim();
+		if (sections.length == 3) return removeAll(origin, destination);
+		try {
+			double price = Double.parseDouble(sections[3]);
+			double miles = Double.parseDouble(sections[4]);
+			double newPrice = kind == Kind.REPRICE ? Double.parseDouble(sections[5]) : Double.NaN;
+			return new FlightUpdate(kind, origin, destination, price, miles, newPrice);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad number: " + line);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder line = new StringBuilder(kind + "," + origin + "," + destination);
+		if (isSingleFlight()) line.append(",").append(price).append(",").append(miles);
+		if (kind == Kind.REPRICE) line.append(",").append(newPrice);
+		return line.toString();
+	}
+}
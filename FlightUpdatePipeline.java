@@ -0,0 +1,319 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streams flight updates into a BackendBD without reloading the data. Updates are put on a queue
+ * (by submit, or by tail from a file that keeps growing) and a worker thread takes them off in
+ * batches of up to maxBatch, applying each batch with BackendBD.applyUpdates: the graph and the
+ * flight statistics change in place and the route queries get one new snapshot per batch. Every
+ * batch is reported with how long it took to apply.
+ */
+public class FlightUpdatePipeline implements AutoCloseable {
+
+	/**
+	 * What happened to one batch
+	 */
+	public static class BatchReport {
+		public final int size; // updates in the batch
+		public final int applied; // updates that changed the graph
+		public final long applyNanos; // time applyUpdates took, including publishing the snapshot
+		public final RuntimeException failure; // what applyUpdates threw, null if it returned
+
+		public BatchReport(int size, int applied, long applyNanos) {
+			this(size, applied, applyNanos, null);
+		}
+
+		public BatchReport(int size, int applied, long applyNanos, RuntimeException failure) {
+			this.size = size;
+			this.applied = applied;
+			this.applyNanos = applyNanos;
+			this.failure = failure;
+		}
+
+		public double getApplyMillis() {
+			return applyNanos / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("batch of %d updates (%d applied) in %.2f ms", size, applied, getApplyMillis())
+					+ (failure == null ? "" : ", failed: " + failure);
+		}
+	}
+
+	private final BackendBD backend; // where the updates go
+	private final int maxBatch; // most updates applied at once
+	private final BlockingQueue<FlightUpdate> queue = new LinkedBlockingQueue<FlightUpdate>();
+	private final List<Consumer<BatchReport>> listeners = new CopyOnWriteArrayList<Consumer<BatchReport>>();
+	private final List<Thread> tailers = new CopyOnWriteArrayList<Thread>(); // threads started by tail
+	private final Thread worker; // applies the batches
+	private volatile boolean running = true; // false once close is called
+
+	private long submitted = 0; // updates put on the queue, guarded by this
+	private long processed = 0; // updates taken off it and applied, guarded by this
+	private volatile long batches = 0; // batches applied
+	private volatile long totalNanos = 0; // time spent applying them
+	private volatile long maxNanos = 0; // slowest batch
+	private final AtomicLong rejectedLines = new AtomicLong(); // lines tail couldn't read as updates
+	private final AtomicLong failedBatches = new AtomicLong(); // batches applyUpdates threw on
+	private final AtomicLong listenerFailures = new AtomicLong(); // listener calls that threw
+	private volatile RuntimeException lastFailure = null; // the latest of either, null before the first
+	private volatile BatchReport lastReport = null; // the latest batch, null before the first
+
+	/**
+	 * Starts the worker thread
+	 * @param backend - the backend to apply the updates to
+	 * @param maxBatch - the most updates applied (and published) together, at least 1
+	 */
+	public FlightUpdatePipeline(BackendBD backend, int maxBatch) {
+		if (maxBatch < 1) throw new IllegalArgumentException("Batches need room for at least one update");
+		this.backend = backend;
+		this.maxBatch = maxBatch;
+		this.worker = new Thread(this::work, "flight-updates");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Calls the listener with the report of every batch, on the worker thread
+	 */
+	public void addListener(Consumer<BatchReport> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Queues one update
+	 */
+	public void submit(FlightUpdate update) {
+		if (!running) throw new IllegalStateException("The pipeline is closed");
+		synchronized (this) {
+			submitted++;
+		}
+		queue.add(update);
+	}
+
+	/**
+	 * Queues updates in order
+	 */
+	public void submitAll(Collection<FlightUpdate> updates) {
+		for (FlightUpdate update : updates) submit(update);
+	}
+
+	/**
+	 * Follows a file of updates (see FlightUpdate) as it grows, like tail -f: every complete line,
+	 * those already in the file first, is queued. Lines that aren't updates are counted and skipped
+	 * @param fileName - the file to follow, it doesn't have to exist yet
+	 * @param pollMillis - how long to wait for more lines once the end is reached
+	 * @return - the thread reading the file, stopped by close
+	 */
+	public Thread tail(String fileName, long pollMillis) {
+		Thread tailer = new Thread(() -> follow(new File(fileName), pollMillis), "tail " + fileName);
+		tailer.setDaemon(true);
+		tailers.add(tailer);
+		tailer.start();
+		return tailer;
+	}
+
+	private void follow(File file, long pollMillis) {
+		long position = 0; // end of what was read so far
+		ByteArrayOutputStream partial = new ByteArrayOutputStream(); // a line that has no line break yet
+		byte[] buffer = new byte[64 * 1024];
+		while (running) {
+			try {
+				if (file.length() < position) { // the file was replaced, start over
+					position = 0;
+					partial.reset();
+				}
+				boolean read = false;
+				if (file.length() > position) {
+					try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+						in.seek(position);
+						int count;
+						while ((count = in.read(buffer)) > 0) {
+							position += count;
+							read = true;
+							int start = 0;
+							for (int i = 0; i < count; i++) {
+								if (buffer[i] != '\n') continue;
+								partial.write(buffer, start, i - start);
+								queueLine(new String(partial.toByteArray(), StandardCharsets.UTF_8));
+								partial.reset();
+								start = i + 1;
+							}
+							partial.write(buffer, start, count - start);
+						}
+					}
+				}
+				if (!read) Thread.sleep(pollMillis);
+			} catch (IOException e) {
+				try {
+					Thread.sleep(pollMillis); // the file may be in the middle of being replaced
+				} catch (InterruptedException stop) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void queueLine(String line) {
+		try {
+			FlightUpdate update = FlightUpdate.parse(line);
+			if (update != null && running) submit(update);
+		} catch (IllegalArgumentException e) {
+			rejectedLines.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Takes batches off the queue and applies them until the pipeline is closed and the queue empty
+	 */
+	private void work() {
+		List<FlightUpdate> batch = new ArrayList<FlightUpdate>(maxBatch);
+		while (running || !queue.isEmpty()) {
+			try {
+				FlightUpdate first = queue.poll(50, TimeUnit.MILLISECONDS);
+				if (first == null) continue;
+				batch.add(first);
+				queue.drainTo(batch, maxBatch - 1);
+				long start = System.nanoTime();
+				int applied = 0;
+				RuntimeException failure = null;
+				try {
+					applied = backend.applyUpdates(batch);
+				} catch (RuntimeException e) { // a bad batch doesn't stop the stream
+					failure = e;
+					failedBatches.incrementAndGet();
+					lastFailure = e;
+				}
+				report(new BatchReport(batch.size(), applied, System.nanoTime() - start, failure), batch.size());
+				batch.clear();
+			} catch (InterruptedException e) {
+				if (!running) return;
+			}
+		}
+	}
+
+	/**
+	 * Records a batch and tells the listeners. The batch counts as processed for flush however the
+	 * listeners fare, and one that throws doesn't keep the others from being called
+	 */
+	private void report(BatchReport report, int size) {
+		try {
+			batches++;
+			totalNanos += report.applyNanos;
+			maxNanos = Math.max(maxNanos, report.applyNanos);
+			lastReport = report;
+			for (Consumer<BatchReport> listener : listeners) {
+				try {
+					listener.accept(report);
+				} catch (RuntimeException e) {
+					listenerFailures.incrementAndGet();
+					lastFailure = e;
+				}
+			}
+		} finally {
+			synchronized (this) {
+				processed += size;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until every update submitted before the call has been applied
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (this) {
+			long target = submitted;
+			while (processed < target) wait();
+		}
+	}
+
+	/**
+	 * Stops following files, applies what is still queued and stops the worker. If the calling
+	 * thread is interrupted while waiting for that, it stops waiting and keeps its interrupt status
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			for (Thread tailer : tailers) {
+				tailer.interrupt();
+				tailer.join();
+			}
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the number of batches applied
+	 */
+	public long getBatchCount() {
+		return batches;
+	}
+
+	/**
+	 * Returns the average time a batch took to apply, in milliseconds
+	 */
+	public double getAverageBatchMillis() {
+		return batches == 0 ? 0 : totalNanos / 1e6 / batches;
+	}
+
+	/**
+	 * Returns the longest time a batch took to apply, in milliseconds
+	 */
+	public double getMaxBatchMillis() {
+		return maxNanos / 1e6;
+	}
+
+	/**
+	 * Returns the report of the latest batch, null before the first
+	 */
+	public BatchReport getLastReport() {
+		return lastReport;
+	}
+
+	/**
+	 * Returns how many lines followed files had that weren't updates
+	 */
+	public long getRejectedLines() {
+		return rejectedLines.get();
+	}
+
+	/**
+	 * Returns how many batches applyUpdates threw on. Their reports carry the exception
+	 */
+	public long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	/**
+	 * Returns how many times a listener threw on a report
+	 */
+	public long getListenerFailures() {
+		return listenerFailures.get();
+	}
+
+	/**
+	 * Returns what the latest failed batch or listener threw, null if none did
+	 */
+	public RuntimeException getLastFailure() {
+		return lastFailure;
+	}
+}
@@ -1,8 +1,10 @@
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
+import java.util.stream.IntStream;
 
 
 
@@ -15,11 +17,17 @@ import java.util.PriorityQueue;
  * @param <String>
  * @param <FlightInterface>
  */
-public class Graph<String, T extends FlightInterface> implements GraphADT<String, T> {
+public class Graph<String, T extends FlightInterface> implements GraphADT<String, T>, NetworkSource {
 
 	
-	protected Hashtable<String,Node> nodes = new Hashtable(); //Hashtable of all the nodes
+	protected HashMap<String,Node> nodes = new HashMap<String,Node>(); //HashMap of all the nodes
+	protected ArrayList<Node> nodesById = new ArrayList<Node>(); //Nodes by their id, null once removed
 	protected int edgeCount = 0; //Number of edges in the graph
+	protected LongHashMap<Edge> edgeIndex = new LongHashMap<Edge>(); //Edge of every (origin id, destination id) pair
+	protected FlightNetwork network = null; //Frozen copy handed out by getNetwork, null after a change
+	protected SearchMode searchMode = SearchMode.DIJKSTRA; //How computeShortestPath searches
+	protected int landmarkCount = 8; //Number of landmarks the ALT index is built with
+	protected LandmarkIndex landmarkIndex = null; //ALT index, null until built and after every change
 	
 	/**
 	 * Search node class that contains the weight of the path and previous airport
@@ -49,17 +57,23 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	 */
 	protected class Node {
         public String data; //The name of the airport
+        public int id; //Index of the node in the search arrays
         public List<Edge> edgesLeaving = new LinkedList<>(); //List of flights leaving
         public List<Edge> edgesEntering = new LinkedList<>(); //List of flights entering
-        public Node(String data) { this.data = data; } //Constructor
+        public Node(String data, int id) { this.data = data; this.id = id; } //Constructor
     }
 	
+	/**
+	 * All the flights between two airports. The searches follow the cheapest one, data
+	 */
 	protected class Edge {
-        public FlightInterface data; // the weight or cost of this edge
+        public FlightInterface data; // the cheapest flight, the weight or cost of this edge
+        public FlightBucket flights; // every flight between the two airports, cheapest first
         public Node predecessor;
         public Node successor;
         public Edge(FlightInterface data, Node pred, Node succ) {
             this.data = data;
+            this.flights = new FlightBucket(data);
             this.predecessor = pred;
             this.successor = succ;
         }
@@ -71,7 +85,10 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	@Override
 	public boolean insertNode(String data) {
         if(nodes.containsKey(data)) return false;
-        nodes.put(data,new Node(data));
+        Node newNode = new Node(data, nodesById.size());
+        nodes.put(data,newNode);
+        nodesById.add(newNode);
+        graphChanged();
         return true;
     }
 
@@ -83,12 +100,19 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 		// remove this node from nodes collection
         if(!nodes.containsKey(data)) return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodesById.set(oldNode.id, null);
         // remove all edges entering neighboring nodes from this one
         for(Edge edge : oldNode.edgesLeaving)
-            nodes.get(edge.data.getDestinationAirport()).edgesEntering.remove(edge);
+            edge.successor.edgesEntering.remove(edge);
         // remove all edges leaving neighboring nodes toward this one
         for(Edge edge : oldNode.edgesEntering)
-        	nodes.get(edge.data.getOriginAirport()).edgesLeaving.remove(edge);
+        	edge.predecessor.edgesLeaving.remove(edge);
+        // and forget the edges of both kinds in the index
+        for(Edge edge : oldNode.edgesLeaving)
+        	edgeIndex.remove(LongHashMap.pairKey(oldNode.id, edge.successor.id));
+        for(Edge edge : oldNode.edgesEntering)
+        	edgeIndex.remove(LongHashMap.pairKey(edge.predecessor.id, oldNode.id));
+        graphChanged();
         return true;
 	}
 
@@ -109,7 +133,8 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	}
 
 	/**
-	 * Inserts the flight into the graph
+	 * Inserts the flight into the graph. A flight between two airports that already have one is
+	 * kept next to it, the searches use whichever is cheapest
 	 * @param pred - the origin airport as a string
 	 * @param succ - the destination airport as a string
 	 * @param flight - the flight of the edge to insert
@@ -121,32 +146,72 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
         Node predNode = nodes.get(pred);
         Node succNode = nodes.get(succ);
         if(predNode == null || succNode == null) return false;
-        try {
-            Edge existingEdge = getEdgeHelper(pred,succ);
-        } catch(NoSuchElementException e) {
-            // otherwise create a new edges
-            Edge newEdge = new Edge(flight, predNode, succNode);
-            this.edgeCount++;
-            // and insert it into each of its adjacent nodes' respective lists
-            predNode.edgesLeaving.add(newEdge);
-            succNode.edgesEntering.add(newEdge);
+        return insertEdge(predNode, succNode, flight);
+	}
+
+	/**
+	 * Returns the node id of every airport in a list, -1 for the ones that aren't in the graph, so a
+	 * bulk load can insert its flights with insertEdgeById and look every airport code up once
+	 * instead of twice per flight
+	 * @param airports - the airports, e.g. the ones a reader numbered (see Airport.getId)
+	 * @return - the node id of the airport at every index of the list
+	 */
+	public int[] idsOf(List<? extends AirportInterface> airports) {
+		int[] ids = new int[airports.size()];
+		for(int i = 0; i < ids.length; i++) {
+			Node node = nodes.get(airports.get(i).toString());
+			ids[i] = node == null ? -1 : node.id;
+		}
+		return ids;
+	}
+
+	/**
+	 * Inserts the flight between two nodes given by their ids (see idsOf), like insertEdge
+	 * @return - true if the insertion was successful. False if either node is not in the graph
+	 */
+	public boolean insertEdgeById(int pred, int succ, T flight) {
+		if(pred < 0 || pred >= nodesById.size() || succ < 0 || succ >= nodesById.size()) return false;
+		Node predNode = nodesById.get(pred);
+		Node succNode = nodesById.get(succ);
+		if(predNode == null || succNode == null) return false;
+		return insertEdge(predNode, succNode, flight);
+	}
+
+	/**
+	 * Inserts the flight between two nodes of the graph
+	 */
+	private boolean insertEdge(Node predNode, Node succNode, T flight) {
+        long key = LongHashMap.pairKey(predNode.id, succNode.id);
+        Edge existingEdge = edgeIndex.get(key);
+        if(existingEdge != null) {
+            // add the flight to the ones already between the two airports
+            if(existingEdge.flights.add(flight)) {
+                existingEdge.data = existingEdge.flights.best();
+                this.edgeCount++;
+                graphChanged();
+            }
+            return true;
         }
+        // otherwise create a new edges
+        Edge newEdge = new Edge(flight, predNode, succNode);
+        this.edgeCount++;
+        // and insert it into each of its adjacent nodes' respective lists
+        predNode.edgesLeaving.add(newEdge);
+        edgeIndex.put(key, newEdge);
+        succNode.edgesEntering.add(newEdge);
+        graphChanged();
         return true;
 	}
 
 	/**
-	 * Removes the edge from the airport. Returns false if unsuccessful
+	 * Removes every flight between two airports. Returns false if there were none
 	 */
 	@Override
 	public boolean removeEdge(String pred, String succ) {
 		try {
             // when an edge exists
             Edge oldEdge = getEdgeHelper(pred,succ);        
-            // remove it from the edge lists of each adjacent node
-            nodes.get(oldEdge.data.getOriginAirport()).edgesLeaving.remove(oldEdge);
-            nodes.get(oldEdge.data.getDestinationAirport()).edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
+            removeEdge(oldEdge);
             return true;
         } catch(NoSuchElementException e) {
             // when no such edge exists, return false instead
@@ -154,6 +219,47 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
         }
 	}
 
+	/**
+	 * Removes one flight between two airports, keeping any others between them
+	 * @param pred - the origin airport as a string
+	 * @param succ - the destination airport as a string
+	 * @param flight - the flight to remove
+	 * @return - true if the flight was in the graph
+	 */
+	@Override
+	public boolean removeFlight(String pred, String succ, T flight) {
+		Edge edge = findEdge(pred, succ);
+		if(edge == null || !edge.flights.remove(flight)) return false;
+		this.edgeCount--;
+		if(edge.flights.isEmpty()) {
+			removeEdge(edge); //Nothing left between the two airports
+		} else {
+			edge.data = edge.flights.best();
+			graphChanged();
+		}
+		return true;
+	}
+
+	/**
+	 * Takes an edge and all its flights out of the graph
+	 */
+	protected void removeEdge(Edge oldEdge) {
+        // remove it from the edge lists of each adjacent node
+        oldEdge.predecessor.edgesLeaving.remove(oldEdge);
+        edgeIndex.remove(LongHashMap.pairKey(oldEdge.predecessor.id, oldEdge.successor.id));
+        oldEdge.successor.edgesEntering.remove(oldEdge);
+        // and decrement the edge count before removing
+        this.edgeCount -= oldEdge.flights.size();
+        graphChanged();
+	}
+
+	/**
+	 * Returns every flight between two airports, cheapest first. Throws if there is none
+	 */
+	public List<FlightInterface> getFlights(String pred, String succ) {
+		return getEdgeHelper(pred,succ).flights.asList();
+	}
+
 	/**
 	 * Returns true if the flight is in the graph, false otherwise
 	 */
@@ -164,7 +270,7 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	}
 	
 	/**
-	 * Returns the edge from two airports
+	 * Returns the cheapest flight between two airports
 	 */
 	@Override
 	public T getEdge(String pred, String succ) {
@@ -178,17 +284,25 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	 * @return - the flight connecting the two airports
 	 */
 	protected Edge getEdgeHelper(String pred, String succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
-        for(Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if(edge.data.getDestinationAirport().equals(succ))
-                return edge;
+        // look the edge up in the index instead of walking the predecessor's leaving edges
+        Edge edge = findEdge(pred, succ);
+        if(edge != null)
+            return edge;
         // when no such edge can be found, throw NSE
         throw new NoSuchElementException("No edge from "+pred.toString()+" to "+
                                          succ.toString());
     }
 	
+	/**
+	 * Returns the edge with the given origin and destination, null if there is none
+	 */
+	protected Edge findEdge(String pred, String succ) {
+		Node predNode = nodes.get(pred);
+		Node succNode = nodes.get(succ);
+		if(predNode == null || succNode == null) return null;
+		return edgeIndex.get(LongHashMap.pairKey(predNode.id, succNode.id));
+	}
+
 	/**
 	 * Returns the number of edges in the graph
 	 */
@@ -198,11 +312,31 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	}
 
 	/**
-	 * Returns the number of leaving edges in the node
+	 * Returns the number of flights leaving the node
 	 */
 	@Override
 	public int getEdgesInNode(String node) {
-		return nodes.get(node).edgesLeaving.size();
+		int count = 0;
+		for(Edge edge : nodes.get(node).edgesLeaving) count += edge.flights.size();
+		return count;
+	}
+
+	/**
+	 * Returns a frozen CSR copy of the graph. The copy is cached until the graph changes
+	 */
+	@Override
+	public synchronized FlightNetwork getNetwork() {
+		if(network == null) {
+			ArrayList<java.lang.String> airports = new ArrayList<java.lang.String>(nodes.size());
+			ArrayList<FlightInterface> flights = new ArrayList<FlightInterface>(edgeCount);
+			for(Node node : nodesById) {
+				if(node == null) continue; //Removed node
+				airports.add(node.data.toString());
+				for(Edge e : node.edgesLeaving) flights.addAll(e.flights.asList()); //Parallel flights become parallel edges
+			}
+			network = new FlightNetwork(airports, flights);
+		}
+		return network;
 	}
 
 	 /**
@@ -240,41 +374,298 @@ public class Graph<String, T extends FlightInterface> implements GraphADT<String
 	}
 
 	/**
-	 * Uses Dijkstra's algorithm to compute the shortest path
+	 * Returns the path between airports that costs least under a cost model, with its cost. Searches
+	 * the frozen copy of the graph (see getNetwork) with the model's weights, so the flights don't
+	 * change and queries with different models can run at the same time
+	 */
+	public Path shortestPath(String start, String end, CostModel model) {
+		return getNetwork().shortestPath(start.toString(), end.toString(), model);
+	}
+
+	/**
+	 * Sets how shortest path queries search the graph
+	 * @param searchMode - the search to use from now on
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * Returns how shortest path queries search the graph
+	 */
+	public SearchMode getSearchMode() {
+		return searchMode;
+	}
+
+	/**
+	 * Sets how many landmarks the next ALT index is built with. Drops the current index
+	 * @param landmarkCount - the number of landmarks, at least 1
+	 */
+	public void setLandmarkCount(int landmarkCount) {
+		if(landmarkCount < 1) throw new IllegalArgumentException("ALT needs at least one landmark");
+		this.landmarkCount = landmarkCount;
+		this.landmarkIndex = null;
+	}
+
+	/**
+	 * Called after every change to the nodes or edges. Drops everything computed from the old graph
+	 */
+	protected void graphChanged() {
+		network = null;
+		landmarkIndex = null; //Distances to the landmarks may have changed either way
+	}
+
+	/**
+	 * Returns the ALT landmark index, building it first if the graph changed since it was built
+	 */
+	public synchronized LandmarkIndex getLandmarkIndex() {
+		if(landmarkIndex == null) landmarkIndex = buildLandmarkIndex();
+		return landmarkIndex;
+	}
+
+	/**
+	 * Picks the landmarks and computes the distances from and to each of them. Landmarks are
+	 * chosen far from the busiest airport, each one behind a different first flight out of it when
+	 * possible, so they sit on different edges of the network. The searches from and to the
+	 * landmarks run in parallel, one task per landmark and direction
+	 * @return - the new index
+	 */
+	protected LandmarkIndex buildLandmarkIndex() {
+		int n = nodesById.size();
+		Node hub = null;
+		for(Node node : nodesById) {
+			if(node != null && (hub == null || node.edgesLeaving.size() + node.edgesEntering.size()
+					> hub.edgesLeaving.size() + hub.edgesEntering.size())) hub = node;
+		}
+		if(hub == null) return new LandmarkIndex(new int[0], n);
+
+		// order the airports reachable from the hub by distance, farthest first
+		SearchScratch scratch = SearchScratch.local();
+		search(scratch, hub, null, false);
+		Integer[] reached = IntStream.range(0, n).filter(scratch::isSettled).boxed().toArray(Integer[]::new);
+		double[] dist = new double[n];
+		int[] branch = new int[n]; //First airport after the hub on the way to each airport
+		for(int v : reached) dist[v] = scratch.distance(v);
+		for(int v : reached) {
+			int b = v;
+			while(scratch.predecessor(b) >= 0 && scratch.predecessor(b) != hub.id) b = scratch.predecessor(b);
+			branch[v] = b;
+		}
+		Arrays.sort(reached, (a, b) -> Double.compare(dist[b], dist[a]));
+
+		// take the farthest airport of each branch first, then fill up with the farthest left
+		int count = Math.min(landmarkCount, reached.length);
+		int[] landmarks = new int[count];
+		boolean[] taken = new boolean[n];
+		boolean[] branchUsed = new boolean[n];
+		int chosen = 0;
+		for(int pass = 0; pass < 2 && chosen < count; pass++) {
+			for(int v : reached) {
+				if(chosen == count) break;
+				if(taken[v] || (pass == 0 && branchUsed[branch[v]])) continue;
+				taken[v] = true;
+				branchUsed[branch[v]] = true;
+				landmarks[chosen++] = v;
+			}
+		}
+
+		LandmarkIndex index = new LandmarkIndex(landmarks, n);
+		IntStream.range(0, 2 * count).parallel().forEach(task -> {
+			SearchScratch own = SearchScratch.local(); //The scratch of whichever thread runs the task
+			boolean backward = task >= count;
+			int l = task % count;
+			search(own, nodesById.get(landmarks[l]), null, backward);
+			index.store(l, own, backward);
+		});
+		return index;
+	}
+
+	/**
+	 * Uses Dijkstra's algorithm to compute the shortest path. The search stops as soon as the
+	 * destination is settled, and only the search nodes on the returned path are created
 	 * @param start - the starting airport
 	 * @param end - the destination airport
 	 * @return - the search node that contains the previous airport and the cost of the path
 	 */
 	protected SearchNode computeShortestPath(String start, String end) {
+		PerformanceMetrics.Probe probe = PerformanceMetrics.start(); //null unless metrics are on
+		boolean found = false;
+		try {
+			SearchNode node = searchShortestPath(start, end);
+			found = true;
+			return node;
+		} finally {
+			PerformanceMetrics.finish(probe, PerformanceMetrics.Query.GRAPH_SHORTEST_PATH, false, found);
+		}
+	}
+
+	/**
+	 * Runs the search of computeShortestPath with the current search mode
+	 */
+	private SearchNode searchShortestPath(String start, String end) {
     	if(start == end) { //Returns a bank search node if start and end are equal
     		return new SearchNode(nodes.get(start), 0, null);
     	}
     	if(!nodes.containsKey(start) || !nodes.containsKey(end)) { //Throws if start or end isn't in the graph
     		throw new NoSuchElementException("Start or End is not in the graph");
     	}
-    	SearchNode predecessor = null;
-    	double cost = 0;
-    	PriorityQueue<SearchNode> queue = new PriorityQueue<SearchNode>(); //Makes the priority queue of search nodes
-    	queue.add(new SearchNode(nodes.get(start), cost, predecessor));
-    	Hashtable<String, SearchNode> visitedNodes = new Hashtable<String, SearchNode>();
-    	while(!queue.isEmpty()) { 
-    		SearchNode newNode = queue.remove();
-    		if(!visitedNodes.containsKey(newNode.node.data)) {
-    			visitedNodes.put(newNode.node.data, newNode);
-    			predecessor = newNode;
-    			cost = newNode.cost;
-    			for(Edge e : newNode.node.edgesLeaving) {
-    				if(!visitedNodes.containsKey(e.data.getDestinationAirport())) {
-    					queue.add(new SearchNode(nodes.get(e.data.getDestinationAirport()), e.data.value() + cost, predecessor));
-    				}
-    			}
-    		}
+    	if(searchMode == SearchMode.BIDIRECTIONAL) {
+    		return computeBidirectional(nodes.get(start), nodes.get(end));
     	}
-    	if(!visitedNodes.containsKey(end)) {
+    	if(searchMode == SearchMode.ALT) {
+    		return computeAStar(nodes.get(start), nodes.get(end), getLandmarkIndex());
+    	}
+    	Node target = nodes.get(end);
+    	SearchScratch scratch = SearchScratch.local(); //Reuses this thread's arrays between queries
+    	if(!search(scratch, nodes.get(start), target)) {
     		throw new NoSuchElementException("There is not path for the start and end");
     	}
-        return visitedNodes.get(end);
+    	return toSearchNode(scratch, target.id);
     }
+
+	/**
+	 * Runs Dijkstra's algorithm from the source over the int ids of the nodes. The predecessor of
+	 * every reached node is kept as a node id in the scratch
+	 * @param scratch - the arrays to search with, reset first
+	 * @param source - the node to start from
+	 * @param target - the node to stop at, or null to settle every reachable node
+	 * @return - true if the target was settled (always true when there is no target)
+	 */
+	protected boolean search(SearchScratch scratch, Node source, Node target) {
+		return search(scratch, source, target, false);
+	}
+
+	/**
+	 * Same as search(scratch, source, target), but can also run backward over the entering edges,
+	 * finding the cost from every node to the source instead of from it
+	 * @param backward - true to follow edges from their destination to their origin
+	 */
+	protected boolean search(SearchScratch scratch, Node source, Node target, boolean backward) {
+		scratch.reset(nodesById.size());
+		scratch.relax(source.id, 0, -1);
+		while(!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			if(target != null && u == target.id) return true; //The destination can't get any cheaper
+			double cost = scratch.dist[u];
+			Node node = nodesById.get(u);
+			for(Edge e : backward ? node.edgesEntering : node.edgesLeaving) {
+				scratch.relax((backward ? e.predecessor : e.successor).id, cost + e.data.value(), u);
+			}
+		}
+		return target == null;
+	}
+
+	/**
+	 * A* search from the source to the target, using the landmark lower bounds as the estimate of
+	 * the cost still to go. The bounds never overestimate and are consistent, so the target is
+	 * settled with its exact cost
+	 * @param source - the starting airport
+	 * @param target - the destination airport
+	 * @param index - the landmark index of the current graph
+	 * @return - the search node of the destination, linked back to the start
+	 */
+	protected SearchNode computeAStar(Node source, Node target, LandmarkIndex index) {
+		SearchScratch scratch = SearchScratch.local();
+		scratch.reset(nodesById.size());
+		int t = target.id;
+		scratch.relax(source.id, 0, -1, index.lowerBound(source.id, t));
+		while(!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			if(u == t) return toSearchNode(scratch, t);
+			double cost = scratch.dist[u];
+			for(Edge e : nodesById.get(u).edgesLeaving) {
+				int v = e.successor.id;
+				if(scratch.isSettled(v)) continue;
+				double estimate = index.lowerBound(v, t);
+				if(estimate == Double.POSITIVE_INFINITY) continue; //The target can't be reached from v
+				double next = cost + e.data.value();
+				scratch.relax(v, next, u, next + estimate);
+			}
+		}
+		throw new NoSuchElementException("There is not path for the start and end");
+	}
+
+	/**
+	 * Bidirectional Dijkstra: takes turns settling one node forward from the start over the leaving
+	 * edges and one node backward from the destination over the entering edges. Every edge that
+	 * joins the two searches gives a path; the best one is final once the two smallest queued
+	 * distances add up to at least its cost
+	 * @param source - the starting airport
+	 * @param target - the destination airport
+	 * @return - the search node of the destination, linked back to the start
+	 */
+	protected SearchNode computeBidirectional(Node source, Node target) {
+		if(source.id == target.id) { //The two searches would only meet after a round trip
+			return new SearchNode(source, 0, null);
+		}
+		SearchScratch forward = SearchScratch.local();
+		SearchScratch backward = SearchScratch.localReverse(); //Predecessors here are the next node toward the destination
+		forward.reset(nodesById.size());
+		backward.reset(nodesById.size());
+		forward.relax(source.id, 0, -1);
+		backward.relax(target.id, 0, -1);
+		double best = Double.POSITIVE_INFINITY; //Cost of the cheapest path found so far
+		int meetFrom = -1, meetTo = -1; //Edge where the two searches of that path meet
+		boolean forwardTurn = true;
+		while(!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+			if(forward.heap.peekKey() + backward.heap.peekKey() >= best) break; //No path left can be cheaper
+			if(forwardTurn) {
+				int u = forward.settleNext();
+				double cost = forward.dist[u];
+				for(Edge e : nodesById.get(u).edgesLeaving) {
+					int v = e.successor.id;
+					double next = cost + e.data.value();
+					forward.relax(v, next, u);
+					if(backward.isReached(v) && next + backward.dist[v] < best) {
+						best = next + backward.dist[v];
+						meetFrom = u;
+						meetTo = v;
+					}
+				}
+			} else {
+				int v = backward.settleNext();
+				double cost = backward.dist[v];
+				for(Edge e : nodesById.get(v).edgesEntering) {
+					int u = e.predecessor.id;
+					double next = cost + e.data.value();
+					backward.relax(u, next, v);
+					if(forward.isReached(u) && next + forward.dist[u] < best) {
+						best = next + forward.dist[u];
+						meetFrom = u;
+						meetTo = v;
+					}
+				}
+			}
+			forwardTurn = !forwardTurn;
+		}
+		if(meetFrom < 0) {
+			throw new NoSuchElementException("There is not path for the start and end");
+		}
+		SearchNode node = toSearchNode(forward, meetFrom);
+		for(int v = meetTo; v >= 0; v = backward.predecessor(v)) {
+			node = new SearchNode(nodesById.get(v), best - backward.distance(v), node);
+		}
+		return node;
+	}
+
+	/**
+	 * Turns the predecessor ids left in the scratch into the chain of search nodes ending at a node
+	 * @param scratch - the scratch of a finished search
+	 * @param id - the id of the last node on the path
+	 * @return - the search node of the last airport, linked back to the start
+	 */
+	protected SearchNode toSearchNode(SearchScratch scratch, int id) {
+		ArrayList<Integer> backwards = new ArrayList<Integer>();
+		for(int v = id; v >= 0; v = scratch.predecessor(v)) {
+			backwards.add(v);
+		}
+		SearchNode node = null;
+		for(int i = backwards.size() - 1; i >= 0; i--) {
+			int v = backwards.get(i);
+			node = new SearchNode(nodesById.get(v), scratch.distance(v), node);
+		}
+		return node;
+	}
 	
 
 }
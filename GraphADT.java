@@ -15,6 +15,7 @@ public interface GraphADT<NodeType, EdgeType> {
 	public int getNodeCount();
 	public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight);
 	public boolean removeEdge(NodeType pred, NodeType succ);
+	public boolean removeFlight(NodeType pred, NodeType succ, EdgeType weight); //Removes one of the flights between two airports, keeping the others
 	public boolean containsEdge(NodeType pred, NodeType succ);
 	public EdgeType getEdge(NodeType pred, NodeType succ);
 	public int getEdgeCount();
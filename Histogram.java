@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative long values with log-linear buckets, like HdrHistogram: every power of
+ * two is split into 32 buckets, so any value is counted within about 3% of itself and the whole
+ * long range fits in 1888 buckets. Recording is one bucket increment and a few striped adds with
+ * no locking. Threads are spread over several copies of the buckets by thread id, so threads that
+ * record at once mostly touch different memory, and the copies are added up when read.
+ */
+public class Histogram {
+
+	private static final int SUB_BITS = 5; // log2 of the buckets per power of two
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT; // enough for Long.MAX_VALUE
+	private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+	private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES]; // bucket counts, one copy per stripe
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Histogram() {
+		for (int s = 0; s < STRIPES; s++) stripes[s] = new AtomicLongArray(BUCKETS);
+	}
+
+	/**
+	 * Counts one value, negative values as 0
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded while it runs may or may not be kept
+	 */
+	public void reset() {
+		for (AtomicLongArray stripe : stripes) {
+			for (int b = 0; b < BUCKETS; b++) stripe.set(b, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Returns the bucket of a value: the value itself below 32, else its power of two and the next
+	 * five bits below its highest one
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_COUNT) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - SUB_BITS) * SUB_COUNT + (int) (value >>> (exponent - SUB_BITS));
+	}
+
+	/**
+	 * Returns the highest value that falls in a bucket
+	 */
+	static long highestOf(int bucket) {
+		if (bucket < SUB_COUNT) return bucket;
+		int shift = bucket / SUB_COUNT - 1;
+		long lowest = (long) (bucket % SUB_COUNT + SUB_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * Returns the count, mean, maximum and usual percentiles of the values recorded so far
+	 */
+	public Summary summary() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (AtomicLongArray stripe : stripes) {
+			for (int b = 0; b < BUCKETS; b++) {
+				long c = stripe.get(b);
+				counts[b] += c;
+				total += c;
+			}
+		}
+		long highest = max.get();
+		return new Summary(total, total == 0 ? 0 : (double) sum.sum() / count.sum(), highest,
+				percentile(counts, total, 50, highest), percentile(counts, total, 90, highest),
+				percentile(counts, total, 99, highest), percentile(counts, total, 99.9, highest));
+	}
+
+	/**
+	 * Returns the highest value of the bucket holding the nearest-rank percentile, never above the
+	 * largest value recorded
+	 */
+	private static long percentile(long[] counts, long total, double percent, long highest) {
+		if (total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank) return Math.min(highestOf(b), highest);
+		}
+		return highest;
+	}
+
+	/**
+	 * The values of a histogram at one point in time
+	 */
+	public static class Summary {
+		public final long count; // values recorded
+		public final double mean;
+		public final long max;
+		public final long p50, p90, p99, p999; // percentiles, within about 3%
+
+		Summary(long count, double mean, long max, long p50, long p90, long p99, long p999) {
+			this.count = count;
+			this.mean = mean;
+			this.max = max;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+		}
+	}
+}
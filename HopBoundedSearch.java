@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Cheapest routes with a bounded number of flights, by layered Bellman-Ford over a FlightNetwork.
+ * Round r finds, for every airport, the cheapest way to reach it from the start with at most r
+ * flights: the best of round r-1, or a route of round r-1 to the origin of an entering edge plus
+ * that edge. Every airport of a round reads only the round before, so the airports of a round are
+ * relaxed in parallel when the network is large. One pass of maxLayovers+1 rounds gives the best
+ * route for every layover budget at once, and the rounds stop early once nothing changes. No route
+ * worth taking visits an airport twice, so it has fewer flights than the network has airports and
+ * a larger budget is clamped to that.
+ */
+public class HopBoundedSearch {
+
+	private static final int PARALLEL_EDGES = 200_000; // edge count from which rounds run in parallel
+
+	private final FlightNetwork net; // the graph to search
+	private final double[] weights; // weight of every edge under the cost model
+
+	public HopBoundedSearch(FlightNetwork net) {
+		this(net, CostModel.VALUE);
+	}
+
+	/**
+	 * Searches the network for the routes that cost least under a cost model
+	 */
+	public HopBoundedSearch(FlightNetwork net, CostModel model) {
+		this.net = net;
+		this.weights = model.weights(net);
+	}
+
+	/**
+	 * Finds the cheapest route between two airports for every number of layovers up to a limit
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @param maxLayovers - the most layovers, at least 0; more than the airports of the network less
+	 *        two are clamped to that, since a larger budget can't make a route cheaper
+	 * @return - a list of (clamped) maxLayovers+1 entries: entry i is the cheapest route with at most
+	 *         i layovers, null when there is none, and the same Path object as entry i-1 when the
+	 *         extra layover doesn't make it cheaper
+	 */
+	public List<Path> find(String start, String end, int maxLayovers) {
+		if (maxLayovers < 0) throw new IllegalArgumentException("The number of layovers can't be negative");
+		int source = net.indexOf(start);
+		int target = net.indexOf(end);
+		if (source < 0 || target < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		int n = net.getNodeCount();
+		int rounds = Math.min(maxLayovers, Math.max(n - 2, 0)) + 1; // a route has at most n-1 flights
+		double[][] dist = new double[rounds + 1][]; // dist[r][v]: cheapest cost with at most r flights
+		int[][] pred = new int[rounds + 1][]; // pred[r][v]: last edge of that route, -1 if it is the one of round r-1
+		dist[0] = new double[n];
+		Arrays.fill(dist[0], Double.POSITIVE_INFINITY);
+		dist[0][source] = 0;
+		int done = rounds; // last round computed
+		for (int r = 1; r <= rounds; r++) {
+			double[] before = dist[r - 1];
+			double[] now = new double[n];
+			int[] last = new int[n];
+			dist[r] = now;
+			pred[r] = last;
+			IntStream nodes = IntStream.range(0, n);
+			if (net.getEdgeCount() >= PARALLEL_EDGES) nodes = nodes.parallel();
+			nodes.forEach(v -> relax(v, before, now, last));
+			if (Arrays.equals(before, now)) { // stable, the later rounds would be the same
+				done = r;
+				break;
+			}
+		}
+		List<Path> best = new ArrayList<Path>(rounds);
+		Path previous = null;
+		for (int r = 1; r <= rounds; r++) {
+			int round = Math.min(r, done);
+			if (dist[round][target] == Double.POSITIVE_INFINITY) {
+				best.add(null);
+			} else if (previous != null && previous.cost == dist[round][target]) {
+				best.add(previous); // one more layover doesn't help, the same route is repeated
+			} else {
+				previous = toPath(dist, pred, round, target);
+				best.add(previous);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Computes the cost of one airport in a round from the round before
+	 */
+	private void relax(int v, double[] before, double[] now, int[] last) {
+		double cost = before[v];
+		int edge = -1;
+		for (int i = net.inOffsets[v]; i < net.inOffsets[v + 1]; i++) {
+			int e = net.inEdges[i];
+			double through = before[net.origins[e]] + weights[e];
+			if (through < cost) {
+				cost = through;
+				edge = e;
+			}
+		}
+		now[v] = cost;
+		last[v] = edge;
+	}
+
+	/**
+	 * Walks the rounds back from the target to make its route
+	 */
+	private Path toPath(double[][] dist, int[][] pred, int round, int target) {
+		List<String> nodes = new ArrayList<String>();
+		List<FlightInterface> flights = new ArrayList<FlightInterface>();
+		nodes.add(net.nameOf(target));
+		int v = target;
+		for (int r = round; r > 0; r--) {
+			int e = pred[r][v];
+			if (e < 0) continue; // same route as the round before
+			flights.add(net.flightOf(e));
+			v = net.origins[e];
+			nodes.add(net.nameOf(v));
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(flights);
+		return new Path(nodes, dist[round][target], flights);
+	}
+}
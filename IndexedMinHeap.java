@@ -0,0 +1,135 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min heap over the int ids 0..capacity-1 with a double key per id. Keeps the heap
+ * position of every id so that a queued id can have its key decreased in place instead of
+ * being queued a second time.
+ */
+public class IndexedMinHeap {
+
+	private int[] heap; // ids in heap order
+	private int[] pos; // position of each id in heap, -1 when not queued
+	private double[] keys; // key of each queued id
+	private int size = 0; // number of queued ids
+
+	public IndexedMinHeap(int capacity) {
+		heap = new int[Math.max(capacity, 1)];
+		pos = new int[Math.max(capacity, 1)];
+		keys = new double[Math.max(capacity, 1)];
+		Arrays.fill(pos, -1);
+	}
+
+	/**
+	 * Grows the heap so that ids up to capacity-1 can be queued. Queued ids are kept
+	 * @param capacity - the number of ids the heap has to hold
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= pos.length) return;
+		int oldLength = pos.length;
+		heap = Arrays.copyOf(heap, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		pos = Arrays.copyOf(pos, capacity);
+		Arrays.fill(pos, oldLength, capacity, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int id) {
+		return pos[id] >= 0;
+	}
+
+	/**
+	 * Empties the heap. Only touches the ids that are still queued
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Queues the id with the given key, or lowers its key if it is already queued with a higher one
+	 * @param id - the id to queue
+	 * @param key - the key of the id
+	 * @return - true if the id was queued or its key was lowered
+	 */
+	public boolean insertOrDecrease(int id, double key) {
+		int i = pos[id];
+		if (i < 0) {
+			i = size++;
+			heap[i] = id;
+			pos[id] = i;
+		} else if (key >= keys[id]) {
+			return false;
+		}
+		keys[id] = key;
+		siftUp(i);
+		return true;
+	}
+
+	/**
+	 * Returns the key of the id at the top of the heap
+	 */
+	public double peekKey() {
+		if (size == 0) throw new NoSuchElementException("Heap is empty");
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Removes and returns the id with the smallest key
+	 */
+	public int poll() {
+		if (size == 0) throw new NoSuchElementException("Heap is empty");
+		int top = heap[0];
+		pos[top] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int id = heap[i];
+		double key = keys[id];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int parentId = heap[parent];
+			if (keys[parentId] <= key) break;
+			heap[i] = parentId;
+			pos[parentId] = i;
+			i = parent;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+
+	private void siftDown(int i) {
+		int id = heap[i];
+		double key = keys[id];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int childId = heap[child];
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[childId]) {
+				child = right;
+				childId = heap[child];
+			}
+			if (key <= keys[childId]) break;
+			heap[i] = childId;
+			pos[childId] = i;
+			i = child;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Yen's algorithm for the k shortest loopless paths between two airports of a FlightNetwork.
+ * The network is never changed: the edges and nodes a spur search has to avoid are masked in
+ * arrays owned by this object. One search from the destination over the entering edges builds
+ * the shortest path tree rooted at the destination. That tree gives the first path directly, is
+ * reused as the spur path whenever it avoids the masks, and otherwise serves as the (exact for
+ * the unmasked graph) A* estimate that steers every spur search.
+ */
+public class KShortestPaths {
+
+	/**
+	 * A path found by the search, as the edge ids of the network in travel order
+	 */
+	protected static class Route implements Comparable<Route> {
+		public final int[] edges; // edge ids from the start to the destination
+		public final double cost; // sum of the edge weights
+
+		public Route(int[] edges, double cost) {
+			this.edges = edges;
+			this.cost = cost;
+		}
+
+		public int compareTo(Route other) {
+			if (cost != other.cost) return cost < other.cost ? -1 : 1;
+			return Integer.compare(edges.length, other.edges.length); // fewer layovers first on ties
+		}
+	}
+
+	private final FlightNetwork net; // the graph to search
+	private final double[] weights; // weight of every edge under the cost model
+	private double[] toTarget; // cost from every node to the destination, infinity if unreachable
+	private int[] treeEdge; // first edge on the shortest path from every node to the destination
+	private int[] nodeBlocked; // search number that blocked each node
+	private int[] edgeBlocked; // search number that blocked each edge
+	private int maskEpoch = 0; // number of the current spur search
+
+	public KShortestPaths(FlightNetwork net) {
+		this(net, CostModel.VALUE);
+	}
+
+	/**
+	 * Searches the network for the paths that cost least under a cost model
+	 */
+	public KShortestPaths(FlightNetwork net, CostModel model) {
+		this.net = net;
+		this.weights = model.weights(net);
+		this.nodeBlocked = new int[net.getNodeCount()];
+		this.edgeBlocked = new int[net.getEdgeCount()];
+	}
+
+	/**
+	 * Finds up to k of the cheapest paths without repeated airports between two airports
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @param k - the number of paths wanted
+	 * @return - the paths from cheapest to most expensive, each with its cost
+	 */
+	public List<Path> find(String start, String end, int k) {
+		int source = net.indexOf(start);
+		int target = net.indexOf(end);
+		if (source < 0 || target < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		List<Path> paths = new ArrayList<Path>();
+		for (Route route : findRoutes(source, target, k))
+			paths.add(toPath(source, route));
+		return paths;
+	}
+
+	/**
+	 * Finds up to k of the cheapest loopless paths between two node ids. Throws if there is no path
+	 */
+	protected List<Route> findRoutes(int source, int target, int k) {
+		buildTree(target);
+		if (toTarget[source] == Double.POSITIVE_INFINITY) {
+			throw new NoSuchElementException("There is not path for the start and end");
+		}
+		List<Route> found = new ArrayList<Route>();
+		found.add(treeRoute(source));
+		PriorityQueue<Route> candidates = new PriorityQueue<Route>();
+		HashSet<List<Integer>> seen = new HashSet<List<Integer>>(); // candidates already queued
+		seen.add(edgeKey(found.get(0).edges));
+
+		while (found.size() < k) {
+			Route last = found.get(found.size() - 1);
+			double rootCost = 0;
+			int spur = source;
+			// branch off the last path found at every airport on it
+			for (int i = 0; i < last.edges.length; i++) {
+				maskEpoch++;
+				// edges that already continue this root in an accepted path
+				for (Route r : found)
+					if (r.edges.length > i && sharesRoot(r, last, i))
+						edgeBlocked[r.edges[i]] = maskEpoch;
+				// airports of the root itself, so the spur path can't loop back through them
+				int node = source;
+				for (int j = 0; j < i; j++) {
+					nodeBlocked[node] = maskEpoch;
+					node = net.targets[last.edges[j]];
+				}
+				Route spurRoute = spurSearch(spur, target);
+				if (spurRoute != null) {
+					int[] edges = Arrays.copyOf(last.edges, i + spurRoute.edges.length);
+					System.arraycopy(spurRoute.edges, 0, edges, i, spurRoute.edges.length);
+					if (seen.add(edgeKey(edges)))
+						candidates.add(new Route(edges, rootCost + spurRoute.cost));
+				}
+				rootCost += weights[last.edges[i]];
+				spur = net.targets[last.edges[i]];
+			}
+			if (candidates.isEmpty()) break; // every loopless path has been found
+			found.add(candidates.poll());
+		}
+		return found;
+	}
+
+	/**
+	 * Builds the shortest path tree into the destination by searching backwards over the entering edges
+	 */
+	private void buildTree(int target) {
+		int n = net.getNodeCount();
+		SearchScratch scratch = SearchScratch.localReverse();
+		scratch.reset(n);
+		scratch.relax(target, 0, -1);
+		while (!scratch.heap.isEmpty()) {
+			int v = scratch.settleNext();
+			double cost = scratch.dist[v];
+			for (int i = net.inOffsets[v]; i < net.inOffsets[v + 1]; i++) {
+				int e = net.inEdges[i];
+				scratch.relax(net.origins[e], cost + weights[e], e);
+			}
+		}
+		toTarget = new double[n];
+		treeEdge = new int[n];
+		for (int v = 0; v < n; v++) {
+			toTarget[v] = scratch.distance(v);
+			treeEdge[v] = scratch.predecessor(v);
+		}
+	}
+
+	/**
+	 * Follows the tree from a node to the destination
+	 */
+	private Route treeRoute(int from) {
+		int length = 0;
+		for (int v = from; treeEdge[v] >= 0; v = net.targets[treeEdge[v]]) length++;
+		int[] edges = new int[length];
+		int i = 0;
+		for (int v = from; treeEdge[v] >= 0; v = net.targets[treeEdge[v]]) edges[i++] = treeEdge[v];
+		return new Route(edges, toTarget[from]);
+	}
+
+	/**
+	 * Checks whether the tree path from a node to the destination avoids every masked node and edge
+	 */
+	private boolean treePathOpen(int from) {
+		for (int v = from; treeEdge[v] >= 0; v = net.targets[treeEdge[v]]) {
+			int e = treeEdge[v];
+			if (edgeBlocked[e] == maskEpoch || nodeBlocked[net.targets[e]] == maskEpoch) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the cheapest path from the spur node to the destination that avoids the masks. Uses
+	 * the tree path when it is open, otherwise an A* search guided by the tree costs
+	 * @return - the spur path, or null if the masks cut the spur node off from the destination
+	 */
+	private Route spurSearch(int spur, int target) {
+		if (treePathOpen(spur)) return treeRoute(spur);
+		SearchScratch scratch = SearchScratch.local();
+		scratch.reset(net.getNodeCount());
+		scratch.relax(spur, 0, -1, toTarget[spur]);
+		while (!scratch.heap.isEmpty()) {
+			int u = scratch.settleNext();
+			if (u == target) break;
+			double cost = scratch.dist[u];
+			for (int e = net.offsets[u]; e < net.offsets[u + 1]; e++) {
+				int v = net.targets[e];
+				// a node with no path to the destination in the full graph has none with edges masked
+				if (edgeBlocked[e] == maskEpoch || nodeBlocked[v] == maskEpoch
+						|| toTarget[v] == Double.POSITIVE_INFINITY) continue;
+				double next = cost + weights[e];
+				scratch.relax(v, next, e, next + toTarget[v]);
+			}
+		}
+		if (!scratch.isSettled(target)) return null;
+		LinkedList<Integer> edges = new LinkedList<Integer>();
+		for (int v = target; scratch.predecessor(v) >= 0; v = net.origins[scratch.predecessor(v)])
+			edges.addFirst(scratch.predecessor(v));
+		int[] result = new int[edges.size()];
+		int i = 0;
+		for (int e : edges) result[i++] = e;
+		return new Route(result, scratch.distance(target));
+	}
+
+	/**
+	 * Checks whether two paths use the same first count edges
+	 */
+	private static boolean sharesRoot(Route a, Route b, int count) {
+		for (int j = 0; j < count; j++)
+			if (a.edges[j] != b.edges[j]) return false;
+		return true;
+	}
+
+	private static List<Integer> edgeKey(int[] edges) {
+		List<Integer> key = new ArrayList<Integer>(edges.length);
+		for (int e : edges) key.add(e);
+		return key;
+	}
+
+	/**
+	 * Turns a route into the list of airport codes the frontend shows
+	 */
+	protected Path toPath(int source, Route route) {
+		List<String> nodes = new ArrayList<String>(route.edges.length + 1);
+		List<FlightInterface> flights = new ArrayList<FlightInterface>(route.edges.length);
+		nodes.add(net.nameOf(source));
+		for (int e : route.edges) {
+			nodes.add(net.nameOf(net.targets[e]));
+			flights.add(net.flightOf(e)); // tells routes over parallel flights apart
+		}
+		return new Path(nodes, route.cost, flights);
+	}
+}
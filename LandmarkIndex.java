@@ -0,0 +1,74 @@
+/**
+ * Distances between every airport and a few landmark airports, used as A* estimates (ALT). For a
+ * landmark L the triangle inequality gives two lower bounds on the cost from v to t:
+ * d(L,t) - d(L,v) and d(v,L) - d(t,L). The vectors are stored node-major in primitive arrays, so
+ * the bounds of one node are next to each other in memory.
+ */
+public class LandmarkIndex {
+
+	final int[] landmarks; // node ids of the landmarks
+	final int nodeCount; // number of node ids the index covers
+	final double[] fromLandmark; // d(landmark, node) at node * landmarks + l, infinity if unreachable
+	final double[] toLandmark; // d(node, landmark) at node * landmarks + l, infinity if unreachable
+
+	public LandmarkIndex(int[] landmarks, int nodeCount) {
+		this.landmarks = landmarks;
+		this.nodeCount = nodeCount;
+		this.fromLandmark = new double[nodeCount * landmarks.length];
+		this.toLandmark = new double[nodeCount * landmarks.length];
+	}
+
+	/**
+	 * Copies the distances found by a search from (or to) one landmark into the index
+	 * @param l - the position of the landmark in landmarks
+	 * @param scratch - a finished search that settled every node it could reach
+	 * @param backward - true if the search ran to the landmark over entering edges
+	 */
+	void store(int l, SearchScratch scratch, boolean backward) {
+		double[] column = backward ? toLandmark : fromLandmark;
+		int k = landmarks.length;
+		for (int v = 0; v < nodeCount; v++)
+			column[v * k + l] = scratch.distance(v);
+	}
+
+	/**
+	 * Returns the number of landmarks
+	 */
+	public int size() {
+		return landmarks.length;
+	}
+
+	/**
+	 * Returns a lower bound on the cost of the cheapest path from node v to node t. Infinity means
+	 * t can't be reached from v at all (a landmark reaches v but not t, or t reaches it but v doesn't)
+	 */
+	public double lowerBound(int v, int t) {
+		if (v >= nodeCount || t >= nodeCount) return 0; // node added after the index was built
+		int k = landmarks.length;
+		int vi = v * k;
+		int ti = t * k;
+		double best = 0;
+		for (int l = 0; l < k; l++) {
+			double lt = fromLandmark[ti + l];
+			double lv = fromLandmark[vi + l];
+			if (lv != Double.POSITIVE_INFINITY) {
+				if (lt == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+				if (lt - lv > best) best = lt - lv;
+			}
+			double vl = toLandmark[vi + l];
+			double tl = toLandmark[ti + l];
+			if (tl != Double.POSITIVE_INFINITY) {
+				if (vl == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+				if (vl - tl > best) best = vl - tl;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the number of bytes the distance vectors take
+	 */
+	public long footprint() {
+		return 8L * (fromLandmark.length + toLandmark.length) + 4L * landmarks.length;
+	}
+}
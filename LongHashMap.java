@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to values, with open addressing and linear probing over
+ * parallel arrays, so a lookup neither boxes its key nor follows a chain of entry objects. Used to
+ * find the edge between two airports from a key made of their dense ids (see pairKey).
+ * Not thread-safe; readers may share a map that is no longer written to.
+ */
+public class LongHashMap<V> {
+
+	private static final long EMPTY = Long.MIN_VALUE; // key of a free slot, never a pair key
+
+	private long[] keys; // key of every slot, EMPTY if free
+	private Object[] values; // value of every slot
+	private int size = 0; // number of keys in the map
+
+	public LongHashMap() {
+		this(16);
+	}
+
+	/**
+	 * Makes a map with room for the given number of keys before it has to grow
+	 */
+	public LongHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Returns the key of the ordered pair of ids (origin, destination)
+	 */
+	public static long pairKey(int pred, int succ) {
+		return ((long) pred << 32) | (succ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the value of a key, null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slot(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) return (V) values[slot];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the key is in the map
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param value - the value, not null
+	 * @return - the old value of the key, null if it was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (key == EMPTY) throw new IllegalArgumentException("Key " + key + " is reserved");
+		if (value == null) throw new NullPointerException("Values can't be null");
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				V old = (V) values[slot];
+				values[slot] = value;
+				return old;
+			}
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) grow();
+		return null;
+	}
+
+	/**
+	 * Removes a key. The keys after it in its probe run are moved back, so no tombstones are left
+	 * @return - the value the key had, null if it was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == EMPTY) return null; // the key of free slots, never in the map
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (keys[slot] != key) {
+			if (keys[slot] == EMPTY) return null;
+			slot = (slot + 1) & mask;
+		}
+		V old = (V) values[slot];
+		// shift back every later key of the run that can't be found past the hole any more
+		int hole = slot;
+		for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = slot(keys[next], mask);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		keys[hole] = EMPTY;
+		values[hole] = null;
+		size--;
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every key
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+			int slot = slot(oldKeys[i], mask);
+			while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Returns the home slot of a key, mixing the high bits (the origin of a pair key) into the low
+	 */
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,356 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the same csv files as FlightReader (origin,destination,price,miles per line, optionally
+ * followed by departure,arrival times, see ScheduledFlight), for files with millions of flights. The file is memory-mapped and cut at line breaks into chunks that are parsed
+ * in parallel; each chunk turns its rows into primitive arrays with its own small airport table, so
+ * a row costs no objects beyond a String for the first time a chunk sees an airport. The chunks are
+ * then merged in file order, deduplicating airports through a map and flights through a hash set, so
+ * the lists come out the same as FlightReader's: first occurrence order, no duplicates.
+ *
+ * Unlike FlightReader a row is skipped as a whole when it doesn't parse, so the header line doesn't
+ * add airports. Reading several files accumulates them like FlightReader does, and airports get the
+ * same dense ids (their index in getAirports()).
+ */
+public class MappedFlightReader implements FlightReaderInterface {
+
+    private static final int CHUNK_BYTES = 8 << 20; // bytes of the file one task parses
+    private static final long NO_TIME = Long.MIN_VALUE; // time column of a row without a schedule
+    private static final double[] POW10 = new double[23]; // exact powers of ten as doubles
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final List<AirportInterface> airportList = new ArrayList<>(); // airports in file order
+    private final List<FlightInterface> flightList = new ArrayList<>(); // flights in file order
+    private final HashMap<String, Airport> registry = new HashMap<>(); // one Airport per name
+    private final HashSet<FlightInterface> seen = new HashSet<>(); // flights already in flightList
+
+    @Override
+    public void readFlightsFromFile(String filename) throws FileNotFoundException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            long start = System.nanoTime();
+            long[] bounds = chunkBounds(channel);
+            Chunk[] chunks = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> parse(channel, bounds[i], bounds[i + 1]))
+                    .toArray(Chunk[]::new);
+            long parsed = System.nanoTime();
+            PerformanceMetrics.phase("reader.mapped.parse", parsed - start, channel.size());
+            int before = flightList.size();
+            for (Chunk chunk : chunks) merge(chunk);
+            PerformanceMetrics.phase("reader.mapped.merge", System.nanoTime() - parsed, flightList.size() - before);
+            PerformanceMetrics.phase("reader.mapped.readFlightsFromFile", System.nanoTime() - start,
+                    flightList.size() - before);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Cuts the file into pieces of about CHUNK_BYTES that each start at the beginning of a line
+     * @return - the start of every piece followed by the file size
+     */
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long next = CHUNK_BYTES;
+        while (next < size) {
+            // move the cut to just past the next line break
+            long pos = next;
+            boolean found = false;
+            while (!found && pos < size) {
+                probe.clear();
+                int read = channel.read(probe, pos);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        pos += i + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) pos += read;
+            }
+            if (pos >= size) break;
+            bounds.add(pos);
+            next = pos + CHUNK_BYTES;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    /**
+     * The rows of one piece of the file. Airports are numbered in the order the piece first names them
+     */
+    private static class Chunk {
+        String[] names = new String[64]; // airport name of every local number
+        byte[][] raw = new byte[64][]; // the same names as they are in the file
+        int nameCount;
+        int[] origins = new int[1024]; // local airport numbers and values of every row
+        int[] destinations = new int[1024];
+        double[] prices = new double[1024];
+        double[] miles = new double[1024];
+        long[] departures = new long[1024]; // NO_TIME for rows without a schedule
+        long[] arrivals = new long[1024];
+        int rows;
+
+        // open-addressing table from airport name bytes to local number + 1, 0 for an empty slot
+        int[] slots = new int[128];
+        int[] hashes = new int[64]; // hash of every local name, to grow the table
+
+        void addRow(int origin, int destination, double price, double mile, long departure, long arrival) {
+            if (rows == origins.length) {
+                int capacity = rows * 2;
+                origins = Arrays.copyOf(origins, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                miles = Arrays.copyOf(miles, capacity);
+                departures = Arrays.copyOf(departures, capacity);
+                arrivals = Arrays.copyOf(arrivals, capacity);
+            }
+            origins[rows] = origin;
+            destinations[rows] = destination;
+            prices[rows] = price;
+            miles[rows] = mile;
+            departures[rows] = departure;
+            arrivals[rows] = arrival;
+            rows++;
+        }
+
+        /**
+         * Returns the local number of the airport named by bytes [from, to) of the buffer, giving it
+         * a new number (and making its String) the first time
+         */
+        int airport(ByteBuffer buf, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) hash = 31 * hash + buf.get(i);
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots[slot] - 1;
+                if (id < 0) {
+                    id = add(buf, from, to, hash);
+                    slots[slot] = id + 1;
+                    if (nameCount * 2 > slots.length) rehash();
+                    return id;
+                }
+                if (hashes[id] == hash && sameName(raw[id], buf, from, to)) return id;
+            }
+        }
+
+        private int add(ByteBuffer buf, int from, int to, int hash) {
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+                raw = Arrays.copyOf(raw, nameCount * 2);
+                hashes = Arrays.copyOf(hashes, nameCount * 2);
+            }
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(from + i);
+            raw[nameCount] = bytes;
+            names[nameCount] = new String(bytes, StandardCharsets.UTF_8);
+            hashes[nameCount] = hash;
+            return nameCount++;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < nameCount; id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = id + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean sameName(byte[] name, ByteBuffer buf, int from, int to) {
+            if (name.length != to - from) return false;
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buf.get(from + i)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Maps bytes [start, end) of the file and parses every line in it
+     */
+    private static Chunk parse(FileChannel channel, long start, long end) {
+        Chunk chunk = new Chunk();
+        MappedByteBuffer buf;
+        try {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        int limit = buf.limit();
+        int[] cuts = new int[6]; // end of each of the first six fields of a line
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n') lineEnd++;
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buf.get(contentEnd - 1) == '\r') contentEnd--;
+            int fields = 0;
+            for (int i = lineStart; i < contentEnd && fields < 6; i++) {
+                if (buf.get(i) == ',') cuts[fields++] = i;
+            }
+            if (fields < 6) cuts[fields++] = contentEnd; // the last field runs to the end of the line
+            if (fields >= 4) {
+                double price = parseNumber(buf, cuts[1] + 1, cuts[2]);
+                double mile = parseNumber(buf, cuts[2] + 1, cuts[3]);
+                long departure = NO_TIME;
+                long arrival = NO_TIME;
+                if (fields == 6) { // the extended schema, a plain flight if the columns aren't times
+                    departure = parseTime(buf, cuts[3] + 1, cuts[4]);
+                    arrival = parseTime(buf, cuts[4] + 1, cuts[5]);
+                    if (departure == NO_TIME || arrival == NO_TIME) departure = arrival = NO_TIME;
+                }
+                if (!Double.isNaN(price) && !Double.isNaN(mile) && arrival >= departure) {
+                    int origin = chunk.airport(buf, lineStart, cuts[0]);
+                    int destination = chunk.airport(buf, cuts[0] + 1, cuts[1]);
+                    chunk.addRow(origin, destination, price, mile, departure, arrival);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses a decimal number from bytes [from, to) of the buffer without allocating. Plain numbers
+     * of up to 15 digits are exact doubles, and so is 10^decimals, so digits / 10^decimals rounds
+     * once and gives what Double.parseDouble gives; anything longer or fancier goes through
+     * Double.parseDouble
+     * @return - the number, NaN if it isn't one
+     */
+    static double parseNumber(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) == ' ') from++;
+        while (to > from && buf.get(to - 1) == ' ') to--;
+        if (from == to) return Double.NaN;
+        int i = from;
+        boolean negative = false;
+        if (buf.get(i) == '-' || buf.get(i) == '+') negative = buf.get(i++) == '-';
+        long digits = 0;
+        int count = 0;
+        int decimals = -1; // digits after the point, -1 before the point is seen
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                digits = digits * 10 + (b - '0');
+                count++;
+                if (decimals >= 0) decimals++;
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == to && count > 0 && count <= 15 && decimals < POW10.length) {
+            double value = decimals > 0 ? digits / POW10[decimals] : digits;
+            return negative ? -value : value;
+        }
+        byte[] bytes = new byte[to - from];
+        for (int k = 0; k < bytes.length; k++) bytes[k] = buf.get(from + k);
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses a time column from bytes [from, to) of the buffer: plain seconds since the epoch
+     * without allocating, anything else through ScheduledFlight.parseTime
+     * @return - the time, NO_TIME if it isn't one
+     */
+    static long parseTime(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) == ' ') from++;
+        while (to > from && buf.get(to - 1) == ' ') to--;
+        if (from == to) return NO_TIME;
+        long seconds = 0;
+        int i = from;
+        while (i < to && i - from < 18 && buf.get(i) >= '0' && buf.get(i) <= '9') {
+            seconds = seconds * 10 + (buf.get(i++) - '0');
+        }
+        if (i == to) return seconds;
+        byte[] bytes = new byte[to - from];
+        for (int k = 0; k < bytes.length; k++) bytes[k] = buf.get(from + k);
+        try {
+            return ScheduledFlight.parseTime(new String(bytes, StandardCharsets.ISO_8859_1));
+        } catch (RuntimeException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Adds the airports and flights of one chunk that haven't been seen yet
+     */
+    private void merge(Chunk chunk) {
+        Airport[] airports = new Airport[chunk.nameCount]; // shared Airport of every local number
+        for (int r = 0; r < chunk.rows; r++) {
+            Airport origin = airport(airports, chunk.names, chunk.origins[r]);
+            Airport destination = airport(airports, chunk.names, chunk.destinations[r]);
+            Flight flight = chunk.departures[r] == NO_TIME
+                    ? new Flight(origin, destination, chunk.prices[r], chunk.miles[r])
+                    : new ScheduledFlight(origin, destination, chunk.prices[r], chunk.miles[r],
+                            chunk.departures[r], chunk.arrivals[r]);
+            if (seen.add(flight)) {
+                flightList.add(flight);
+            }
+        }
+    }
+
+    /**
+     * Returns the Airport read for a code, null if no flight named it
+     */
+    public Airport getAirport(String code) {
+        return registry.get(code);
+    }
+
+    /**
+     * Returns the Airport for a local number of a chunk, adding it to the list the first time the
+     * file names it
+     */
+    private Airport airport(Airport[] airports, String[] names, int id) {
+        if (airports[id] == null) {
+            airports[id] = registry.get(names[id]);
+            if (airports[id] == null) {
+                airports[id] = new Airport(names[id], airportList.size());
+                registry.put(names[id], airports[id]);
+                airportList.add(airports[id]);
+            }
+        }
+        return airports[id];
+    }
+
+    public List<AirportInterface> getAirports() {
+        return airportList;
+    }
+
+    public List<FlightInterface> getFlights() {
+        return flightList;
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Writes synthetic airline networks in the schema of Flights.csv, from ten thousand to a hundred
+ * million flights. The same seed and size always give the same file. The networks look like real
+ * ones in the ways that matter to the reader and the searches:
+ *
+ * - airports are ranked by size, with weights falling off like 1/rank, and every airport links to
+ *   airports bigger than itself, picked by weight. Big airports collect links from all the smaller
+ *   ones, so the degrees follow a power law with a few hubs and a long tail of spokes
+ * - airports sit in regional clusters on a 2800 by 1600 mile map, and most links stay in the region
+ * - every link is flown both ways, miles follow the map distance with a small detour, and prices
+ *   follow the miles with some noise and are lower on routes touching a big hub
+ *
+ * Rows are written as they are made, origin by origin, so only the airports are kept in memory
+ * (about 40 bytes each) and the file can be far bigger than the heap. Every pair of airports gets
+ * at most one route each way.
+ *
+ * Run with: java NetworkGenerator flights file [seed]
+ */
+public class NetworkGenerator {
+
+	private static final int FLIGHTS_PER_AIRPORT = 16; // average degree, in and out
+	private static final double LOCAL = 0.7; // share of links that stay in the region when they can
+	private static final double WIDTH = 2800, HEIGHT = 1600; // map size in miles
+	private static final double SPREAD = 150; // standard deviation of an airport from its region's centre
+
+	private final long seed;
+
+	// the airports of the network being written, indexed by rank, 0 the biggest
+	private float[] x, y; // position on the map
+	private int[] region; // region of every airport
+	private double[] cumulative; // cumulative[r]: total weight of the airports ranked before r
+	private int[] members; // airports grouped by region, by rank within a region
+	private int[] position; // index of every airport in members
+	private double[] memberCumulative; // memberCumulative[p]: total weight of members before p
+	private int[] regionStart; // first index in members of every region
+	private long codeSpace; // 26^code length
+	private int codeLength; // letters in an airport code, at least 3
+
+	public NetworkGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java NetworkGenerator flights file [seed]");
+			return;
+		}
+		long flights = Long.parseLong(args[0]);
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		long start = System.nanoTime();
+		new NetworkGenerator(seed).write(flights, new File(args[1]));
+		System.out.printf("%d flights between %d airports written to %s in %.1f s%n", flights,
+				airportsFor(flights), args[1], (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Returns the number of airports a network of that many flights gets
+	 */
+	public static int airportsFor(long flights) {
+		long airports = Math.max(10, flights / FLIGHTS_PER_AIRPORT);
+		if (airports > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many flights: " + flights);
+		return (int) airports;
+	}
+
+	/**
+	 * Writes a network to a file
+	 * @param flights - the number of flights (rows) to write
+	 * @param file - the csv to write, replaced if it exists
+	 */
+	public void write(long flights, File file) throws IOException {
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+				1 << 16)) {
+			write(flights, out);
+		}
+	}
+
+	/**
+	 * Writes a network with its header line. Fewer rows are written only when the flights can't
+	 * fit between the airports without repeating a route
+	 * @param flights - the number of flights (rows) to write
+	 * @param out - where the rows go
+	 * @return - the number of flights written
+	 */
+	public long write(long flights, Writer out) throws IOException {
+		Random random = new Random(seed);
+		int n = airportsFor(flights);
+		place(n, random);
+		out.write("Origin,Dest,Price/Ticket,Miles\n");
+		StringBuilder row = new StringBuilder(64);
+		long pairs = flights / 2; // routes flown both ways
+		boolean odd = flights % 2 == 1; // the last route is flown one way only
+		long written = 0;
+		HashSet<Integer> linked = new HashSet<Integer>(); // airports the current one already links to
+		for (int i = 1; i < n && (pairs > 0 || odd); i++) {
+			long links = linksOf(i, n, pairs, odd, random);
+			linked.clear();
+			for (long l = 0; l < links; l++) {
+				int j = pick(i, linked, random);
+				linked.add(j);
+				double miles = Math.max(30, Math.round(Math.hypot(x[i] - x[j], y[i] - y[j]) * (1.03 + 0.07 * random.nextDouble())));
+				if (pairs > 0) {
+					writeRow(out, row, i, j, miles, random);
+					writeRow(out, row, j, i, miles, random);
+					pairs--;
+					written += 2;
+				} else {
+					writeRow(out, row, i, j, miles, random);
+					odd = false;
+					written++;
+				}
+			}
+		}
+		x = y = null;
+		region = members = position = regionStart = null;
+		cumulative = memberCumulative = null;
+		return written;
+	}
+
+	/**
+	 * Places the airports on the map and sets up their weights and regions
+	 */
+	private void place(int n, Random random) {
+		int regions = Math.max(1, (int) Math.sqrt(n / 8.0));
+		double[] centreX = new double[regions];
+		double[] centreY = new double[regions];
+		for (int g = 0; g < regions; g++) {
+			centreX[g] = random.nextDouble() * WIDTH;
+			centreY[g] = random.nextDouble() * HEIGHT;
+		}
+		x = new float[n];
+		y = new float[n];
+		region = new int[n];
+		cumulative = new double[n + 1];
+		regionStart = new int[regions + 1];
+		for (int r = 0; r < n; r++) {
+			int g = random.nextInt(regions);
+			region[r] = g;
+			regionStart[g + 1]++;
+			x[r] = (float) Math.min(WIDTH, Math.max(0, centreX[g] + random.nextGaussian() * SPREAD));
+			y[r] = (float) Math.min(HEIGHT, Math.max(0, centreY[g] + random.nextGaussian() * SPREAD));
+			cumulative[r + 1] = cumulative[r] + 1.0 / (r + 1);
+		}
+		for (int g = 0; g < regions; g++) regionStart[g + 1] += regionStart[g];
+		// group the airports by region with a counting sort, keeping them by rank within a region
+		members = new int[n];
+		position = new int[n];
+		memberCumulative = new double[n + 1];
+		int[] next = regionStart.clone();
+		for (int r = 0; r < n; r++) {
+			int p = next[region[r]]++;
+			members[p] = r;
+			position[r] = p;
+		}
+		for (int p = 0; p < n; p++) memberCumulative[p + 1] = memberCumulative[p] + 1.0 / (members[p] + 1);
+		codeLength = 3;
+		codeSpace = 26 * 26 * 26;
+		while (codeSpace < n) {
+			codeLength++;
+			codeSpace *= 26;
+		}
+	}
+
+	/**
+	 * Returns how many bigger airports an airport links to: on average what is left spread over the
+	 * airports left, the rest of it for the last one, never more than there are bigger airports
+	 */
+	private static long linksOf(int i, int n, long pairs, boolean odd, Random random) {
+		long left = pairs + (odd ? 1 : 0);
+		if (i == n - 1) return Math.min(left, i);
+		double mean = (double) left / (n - i);
+		// geometric with that mean, so most airports are spokes with a link or two
+		long links = (long) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(mean / (1 + mean)));
+		return Math.min(Math.min(links, i), left);
+	}
+
+	/**
+	 * Picks a bigger airport that the airport doesn't link to yet, in its own region when it can
+	 */
+	private int pick(int i, HashSet<Integer> linked, Random random) {
+		int start = regionStart[region[i]];
+		for (int attempt = 0; attempt < 32; attempt++) {
+			int j;
+			if (random.nextDouble() < LOCAL && position[i] > start) {
+				j = members[search(memberCumulative, start, position[i],
+						memberCumulative[start] + random.nextDouble() * (memberCumulative[position[i]] - memberCumulative[start]))];
+			} else {
+				j = search(cumulative, 0, i, random.nextDouble() * cumulative[i]);
+			}
+			if (!linked.contains(j)) return j;
+		}
+		// nearly every bigger airport is taken, the biggest free one will do
+		int j = 0;
+		while (linked.contains(j)) j++;
+		return j;
+	}
+
+	/**
+	 * Returns the index p in [from, to) with prefix[p] <= target < prefix[p + 1]
+	 */
+	private static int search(double[] prefix, int from, int to, double target) {
+		int low = from;
+		int high = to - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (prefix[mid] <= target) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Writes one flight. Fares start at $50 plus 11 cents a mile, come out up to 40% lower on routes
+	 * touching the biggest hubs, and get a random factor of about +-25%
+	 */
+	private void writeRow(Writer out, StringBuilder row, int from, int to, double miles, Random random) throws IOException {
+		double hub = Math.log1p(Math.min(from, to)) / Math.log1p(x.length); // 0 for the biggest hub, 1 for the smallest
+		double fare = (50 + 0.11 * miles) * (0.6 + 0.4 * hub) * Math.exp(0.25 * random.nextGaussian());
+		long cents = Math.max(1999, Math.round(fare * 100));
+		row.setLength(0);
+		code(row, from);
+		row.append(',');
+		code(row, to);
+		row.append(',').append(cents / 100).append('.');
+		if (cents % 100 < 10) row.append('0');
+		row.append(cents % 100).append(',').append((long) miles).append('\n');
+		out.append(row);
+	}
+
+	/**
+	 * Appends the code of an airport. Ranks are scrambled by a multiplication that is one-to-one
+	 * modulo 26^length, so codes are distinct but don't give away how big an airport is
+	 */
+	private void code(StringBuilder row, int rank) {
+		long value = Math.floorMod(rank * 7_919L + 104_729L, codeSpace);
+		int at = row.length();
+		for (int c = 0; c < codeLength; c++) {
+			row.append('A');
+		}
+		for (int c = codeLength - 1; c >= 0; c--) {
+			row.setCharAt(at + c, (char) ('A' + value % 26));
+			value /= 26;
+		}
+	}
+}
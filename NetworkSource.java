@@ -0,0 +1,11 @@
+/**
+ * Implemented by graphs that can hand out a frozen int-indexed copy of themselves, so routing code
+ * can search primitive arrays instead of going through GraphADT one edge at a time
+ */
+public interface NetworkSource {
+	/**
+	 * Returns a FlightNetwork holding the current nodes and edges of the graph. The returned
+	 * network does not change when the graph is changed later
+	 */
+	public FlightNetwork getNetwork();
+}
@@ -0,0 +1,91 @@
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Measures ParetoSearch on Flights.csv: for random airport pairs and a few sets of bounds, the labels
+ * made and settled per query, the size of the frontier and the query latency, next to the single
+ * criterion Dijkstra search on the same network for scale.
+ *
+ * Run with: java ParetoBenchmark [flights file] [queries]
+ */
+public class ParetoBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String file = args.length > 0 ? args[0] : "Flights.csv";
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		Graph<String, FlightInterface> graph = new Graph<String, FlightInterface>();
+		new BackendBD(graph, new FlightReader()).loadData(file);
+		FlightNetwork net = graph.getNetwork();
+		System.out.println("== " + file + ": " + net.getNodeCount() + " airports, " + net.getEdgeCount() + " flights");
+
+		Random random = new Random(42);
+		String[][] pairs = new String[queries][];
+		for (int i = 0; i < queries; i++) {
+			pairs[i] = new String[] { net.nameOf(random.nextInt(net.getNodeCount())),
+					net.nameOf(random.nextInt(net.getNodeCount())) };
+		}
+
+		long[] dijkstra = new long[queries];
+		for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+			for (int i = 0; i < queries; i++) {
+				long start = System.nanoTime();
+				try {
+					net.shortestPath(pairs[i][0], pairs[i][1]);
+				} catch (NoSuchElementException e) {
+					// no route, still timed
+				}
+				dijkstra[i] = System.nanoTime() - start;
+			}
+		}
+		System.out.printf("dijkstra on value(): %s%n%n", latency(dijkstra));
+
+		run(net, pairs, "1 layover", 1, Double.POSITIVE_INFINITY);
+		run(net, pairs, "2 layovers", 2, Double.POSITIVE_INFINITY);
+		run(net, pairs, "2 layovers, under $600", 2, 600);
+		run(net, pairs, "3 layovers, under $800", 3, 800);
+		run(net, pairs, "unbounded", -1, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Answers every pair with one set of bounds and prints the label counts and the latency
+	 */
+	private static void run(FlightNetwork net, String[][] pairs, String name, int maxLayovers, double maxPrice) {
+		ParetoSearch search = new ParetoSearch(net);
+		long[] nanos = new long[pairs.length];
+		long labels = 0;
+		long settled = 0;
+		long frontier = 0;
+		int maxFrontier = 0;
+		for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+			labels = settled = frontier = maxFrontier = 0;
+			for (int i = 0; i < pairs.length; i++) {
+				long start = System.nanoTime();
+				int found = search.find(pairs[i][0], pairs[i][1], maxLayovers, maxPrice).size();
+				nanos[i] = System.nanoTime() - start;
+				labels += search.getLabelCount();
+				settled += search.getSettledCount();
+				frontier += found;
+				maxFrontier = Math.max(maxFrontier, found);
+			}
+		}
+		System.out.println("pareto, " + name + ":");
+		System.out.printf("  %.0f labels made, %.0f settled, frontier of %.1f routes (at most %d) per query%n",
+				(double) labels / pairs.length, (double) settled / pairs.length, (double) frontier / pairs.length,
+				maxFrontier);
+		System.out.printf("  %s%n%n", latency(nanos));
+	}
+
+	/**
+	 * Returns the mean, median and 99th percentile of query times
+	 */
+	private static String latency(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		double total = 0;
+		for (long n : sorted) total += n;
+		return String.format("%.1f us mean, %.1f us p50, %.1f us p99", total / sorted.length / 1e3,
+				sorted[sorted.length / 2] / 1e3, sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1e3);
+	}
+}
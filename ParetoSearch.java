@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Multi-criteria route search over a FlightNetwork: instead of the one blended value() of a flight it
+ * keeps price, miles and layovers apart and finds every Pareto-optimal route between two airports,
+ * the routes no other route beats on all three at once.
+ *
+ * Label-setting: a label is a partial route (airport, price, miles, flights so far). Labels are taken
+ * off a queue in lexicographic (price, miles, flights) order, so a label taken off is never
+ * dominated by one found later, and it is settled in the bag of its airport. A new label is dropped
+ * when a settled label of its airport, or of the destination, is as good on all three criteria.
+ * Bounds on the layovers and the price drop labels early and keep the bags small.
+ */
+public class ParetoSearch {
+
+	/**
+	 * A route of the frontier with its total of every criterion
+	 */
+	public static class ParetoPath extends Path {
+		public final double price; // sum of the flight prices
+		public final double miles; // sum of the flight miles
+		public final int layovers; // airports between the start and the destination
+
+		public ParetoPath(List<String> nodeList, double cost, List<FlightInterface> flights, double price,
+				double miles, int layovers) {
+			super(nodeList, cost, flights);
+			this.price = price;
+			this.miles = miles;
+			this.layovers = layovers;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: $%.2f, %.0f miles, %d layovers", nodeList, price, miles, layovers);
+		}
+	}
+
+	private final FlightNetwork net; // the graph to search
+
+	// labels, in parallel arrays indexed by label id
+	private int[] node = new int[64]; // airport of the label
+	private double[] price = new double[64]; // price so far
+	private double[] miles = new double[64]; // miles so far
+	private int[] hops = new int[64]; // flights so far
+	private int[] pred = new int[64]; // label it was extended from, -1 at the start
+	private int[] edge = new int[64]; // edge it was extended over, -1 at the start
+	private int[] nextInBag = new int[64]; // next settled label of the same airport, -1 at the end
+	private int labels = 0; // labels made by the last search
+	private int[] bag; // first settled label of every airport, -1 if none
+
+	private int settled = 0; // labels settled by the last search
+	private int pruned = 0; // labels dropped as dominated or out of bounds by the last search
+
+	public ParetoSearch(FlightNetwork net) {
+		this.net = net;
+		this.bag = new int[net.getNodeCount()];
+	}
+
+	/**
+	 * Finds every Pareto-optimal route between two airports
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @param maxLayovers - the most layovers a route may have, negative for no bound
+	 * @param maxPrice - the highest price a route may have, infinity for no bound
+	 * @return - the frontier, cheapest first. Empty if no route keeps within the bounds
+	 */
+	public List<ParetoPath> find(String start, String end, int maxLayovers, double maxPrice) {
+		int source = net.indexOf(start);
+		int target = net.indexOf(end);
+		if (source < 0 || target < 0) { //Throws if start or end isn't in the graph
+			throw new NoSuchElementException("Start or End is not in the graph");
+		}
+		int maxHops = maxLayovers < 0 ? Integer.MAX_VALUE : maxLayovers + 1;
+		Arrays.fill(bag, -1);
+		labels = 0;
+		settled = 0;
+		pruned = 0;
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>((a, b) -> {
+			if (price[a] != price[b]) return price[a] < price[b] ? -1 : 1;
+			if (miles[a] != miles[b]) return miles[a] < miles[b] ? -1 : 1;
+			return Integer.compare(hops[a], hops[b]);
+		});
+		queue.add(label(source, 0, 0, 0, -1, -1));
+		while (!queue.isEmpty()) {
+			int l = queue.poll();
+			int u = node[l];
+			// labels queued before an equal or better one was settled are dropped now
+			if (dominated(u, price[l], miles[l], hops[l])
+					|| (u != target && dominated(target, price[l], miles[l], hops[l]))) {
+				pruned++;
+				continue;
+			}
+			nextInBag[l] = bag[u];
+			bag[u] = l;
+			settled++;
+			if (u == target || hops[l] == maxHops) continue;
+			for (int e = net.offsets[u]; e < net.offsets[u + 1]; e++) {
+				int v = net.targets[e];
+				double p = price[l] + net.flights[e].getPrice();
+				double m = miles[l] + net.flights[e].getMiles();
+				int h = hops[l] + 1;
+				if (p > maxPrice || dominated(v, p, m, h) || dominated(target, p, m, h)) {
+					pruned++;
+					continue;
+				}
+				queue.add(label(v, p, m, h, l, e));
+			}
+		}
+		List<ParetoPath> frontier = new ArrayList<ParetoPath>();
+		for (int l = bag[target]; l >= 0; l = nextInBag[l]) frontier.add(toPath(l));
+		Collections.reverse(frontier); // the bag holds the latest settled first
+		return frontier;
+	}
+
+	/**
+	 * Returns true if a settled label of the airport is at least as good on every criterion
+	 */
+	private boolean dominated(int u, double p, double m, int h) {
+		for (int l = bag[u]; l >= 0; l = nextInBag[l]) {
+			if (price[l] <= p && miles[l] <= m && hops[l] <= h) return true;
+		}
+		return false;
+	}
+
+	private int label(int u, double p, double m, int h, int from, int over) {
+		if (labels == node.length) {
+			int length = labels * 2;
+			node = Arrays.copyOf(node, length);
+			price = Arrays.copyOf(price, length);
+			miles = Arrays.copyOf(miles, length);
+			hops = Arrays.copyOf(hops, length);
+			pred = Arrays.copyOf(pred, length);
+			edge = Arrays.copyOf(edge, length);
+			nextInBag = Arrays.copyOf(nextInBag, length);
+		}
+		node[labels] = u;
+		price[labels] = p;
+		miles[labels] = m;
+		hops[labels] = h;
+		pred[labels] = from;
+		edge[labels] = over;
+		nextInBag[labels] = -1;
+		return labels++;
+	}
+
+	/**
+	 * Walks a label back to the start to make its route
+	 */
+	private ParetoPath toPath(int l) {
+		List<String> nodes = new ArrayList<String>();
+		List<FlightInterface> flights = new ArrayList<FlightInterface>();
+		double cost = 0;
+		for (int at = l; at >= 0; at = pred[at]) {
+			nodes.add(net.nameOf(node[at]));
+			if (edge[at] >= 0) {
+				flights.add(net.flights[edge[at]]);
+				cost += net.weights[edge[at]];
+			}
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(flights);
+		return new ParetoPath(nodes, cost, flights, price[l], miles[l], Math.max(0, hops[l] - 1));
+	}
+
+	/**
+	 * Returns the number of labels the last search made
+	 */
+	public int getLabelCount() {
+		return labels;
+	}
+
+	/**
+	 * Returns the number of labels the last search settled
+	 */
+	public int getSettledCount() {
+		return settled;
+	}
+
+	/**
+	 * Returns the number of labels the last search dropped
+	 */
+	public int getPrunedCount() {
+		return pruned;
+	}
+}
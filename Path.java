@@ -11,7 +11,17 @@ import java.util.List;
  */
 public class Path {
 		public List<String> nodeList; //List represeting all airports in path
+		public double cost; //Total value() of the flights on the path, NaN when it was not computed
+		public List<FlightInterface> flights; //Flight taken out of each airport but the last, null when not known
 		public Path(List<String> nodeList) {
+			this(nodeList, Double.NaN);
+		}
+		public Path(List<String> nodeList, double cost) {
+			this(nodeList, cost, null);
+		}
+		public Path(List<String> nodeList, double cost, List<FlightInterface> flights) {
 			this.nodeList = nodeList;
+			this.cost = cost;
+			this.flights = flights;
 		}
 	}
\ No newline at end of file
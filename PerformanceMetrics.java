@@ -0,0 +1,278 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the hot paths, for finding out why some route queries are slow. For
+ * every instrumented query it keeps the latency and the work done by the searches behind it: how
+ * many searches ran (a top-k query runs one per spur node), nodes settled, edges relaxed and heap
+ * pushes and pops, read from the SearchScratch counters of the calling thread. The load phases of
+ * the readers and the backend are timed as well.
+ *
+ * Metrics are off unless turned on with setEnabled or -Dflights.metrics=true. While off, an
+ * instrumented query costs one volatile read: start() returns null and finish does nothing.
+ * Counters are LongAdders and histograms are striped (see Histogram), so queries on many threads
+ * don't contend. snapshot() reads everything at once for reports.
+ */
+public final class PerformanceMetrics {
+
+	/**
+	 * The instrumented queries
+	 */
+	public enum Query {
+		GRAPH_SHORTEST_PATH("graph.computeShortestPath"),
+		BACKEND_SHORTEST_PATHS("backend.getShortestPaths");
+
+		final String label; // name in reports
+		final QueryCounters counters = new QueryCounters();
+
+		Query(String label) {
+			this.label = label;
+		}
+	}
+
+	private static volatile boolean enabled = Boolean.getBoolean("flights.metrics");
+	private static final Map<String, PhaseCounters> phases = new ConcurrentHashMap<String, PhaseCounters>();
+
+	private PerformanceMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off. What was recorded is kept either way
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Forgets everything recorded so far
+	 */
+	public static void reset() {
+		for (Query query : Query.values()) query.counters.reset();
+		phases.clear();
+	}
+
+	/**
+	 * The time and search counters of the calling thread when a query started
+	 */
+	public static final class Probe {
+		private final long start = System.nanoTime();
+		private final long searches, relaxed, pushes, pops;
+
+		private Probe(SearchScratch forward, SearchScratch backward) {
+			searches = forward.searches + backward.searches;
+			relaxed = forward.relaxed + backward.relaxed;
+			pushes = forward.pushes + backward.pushes;
+			pops = forward.pops + backward.pops;
+		}
+	}
+
+	/**
+	 * Starts measuring a query on the calling thread
+	 * @return - the probe to hand to finish, or null when metrics are off
+	 */
+	public static Probe start() {
+		if (!enabled) return null;
+		return new Probe(SearchScratch.local(), SearchScratch.localReverse());
+	}
+
+	/**
+	 * Records a query started with start() on the same thread
+	 * @param probe - what start() returned, nothing is recorded if it is null
+	 * @param query - the query measured
+	 * @param cacheHit - true if the answer came from a cache without searching
+	 * @param found - false if the query threw because there was no route
+	 */
+	public static void finish(Probe probe, Query query, boolean cacheHit, boolean found) {
+		if (probe == null) return;
+		long nanos = System.nanoTime() - probe.start;
+		SearchScratch forward = SearchScratch.local();
+		SearchScratch backward = SearchScratch.localReverse();
+		QueryCounters c = query.counters;
+		long searches = forward.searches + backward.searches - probe.searches;
+		long settled = forward.pops + backward.pops - probe.pops;
+		c.queries.increment();
+		if (cacheHit) c.cacheHits.increment();
+		if (!found) c.notFound.increment();
+		c.searches.add(searches);
+		c.relaxed.add(forward.relaxed + backward.relaxed - probe.relaxed);
+		c.pushes.add(forward.pushes + backward.pushes - probe.pushes);
+		c.pops.add(settled);
+		c.latency.record(nanos);
+		c.settledPerQuery.record(settled);
+		c.searchesPerQuery.record(searches);
+	}
+
+	/**
+	 * Records one run of a load phase, when metrics are on
+	 * @param name - the phase, e.g. "reader.readFlightsFromFile"
+	 * @param nanos - how long it took
+	 * @param items - how much it handled: flights, airports or bytes, whatever fits the phase
+	 */
+	public static void phase(String name, long nanos, long items) {
+		if (!enabled) return;
+		PhaseCounters c = phases.computeIfAbsent(name, n -> new PhaseCounters());
+		c.runs.increment();
+		c.nanos.add(nanos);
+		c.items.add(items);
+		c.lastNanos = nanos;
+	}
+
+	/**
+	 * Returns everything recorded so far. Queries that finish while it runs may be counted in some
+	 * of the numbers and not others
+	 */
+	public static Snapshot snapshot() {
+		Map<String, QueryStats> queries = new LinkedHashMap<String, QueryStats>();
+		for (Query query : Query.values()) queries.put(query.label, query.counters.stats());
+		Map<String, PhaseStats> loads = new LinkedHashMap<String, PhaseStats>();
+		phases.entrySet().stream().sorted(Map.Entry.comparingByKey())
+				.forEach(e -> loads.put(e.getKey(), e.getValue().stats()));
+		return new Snapshot(enabled, queries, loads);
+	}
+
+	/**
+	 * The live counters of one query
+	 */
+	private static final class QueryCounters {
+		final LongAdder queries = new LongAdder();
+		final LongAdder cacheHits = new LongAdder();
+		final LongAdder notFound = new LongAdder();
+		final LongAdder searches = new LongAdder();
+		final LongAdder relaxed = new LongAdder();
+		final LongAdder pushes = new LongAdder();
+		final LongAdder pops = new LongAdder();
+		final Histogram latency = new Histogram(); // nanoseconds
+		final Histogram settledPerQuery = new Histogram();
+		final Histogram searchesPerQuery = new Histogram();
+
+		void reset() {
+			for (LongAdder a : new LongAdder[] { queries, cacheHits, notFound, searches, relaxed, pushes, pops }) a.reset();
+			latency.reset();
+			settledPerQuery.reset();
+			searchesPerQuery.reset();
+		}
+
+		QueryStats stats() {
+			return new QueryStats(queries.sum(), cacheHits.sum(), notFound.sum(), searches.sum(), pops.sum(),
+					relaxed.sum(), pushes.sum(), pops.sum(), latency.summary(), settledPerQuery.summary(),
+					searchesPerQuery.summary());
+		}
+	}
+
+	/**
+	 * The live counters of one load phase
+	 */
+	private static final class PhaseCounters {
+		final LongAdder runs = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder items = new LongAdder();
+		volatile long lastNanos;
+
+		PhaseStats stats() {
+			return new PhaseStats(runs.sum(), nanos.sum(), lastNanos, items.sum());
+		}
+	}
+
+	/**
+	 * The numbers of one query
+	 */
+	public static final class QueryStats {
+		public final long queries; // queries answered or failed
+		public final long cacheHits; // answered from a cache
+		public final long notFound; // failed because there was no route
+		public final long searches; // searches run, in total
+		public final long settled; // nodes settled, in total, the same as the pops
+		public final long relaxed; // edges relaxed, in total
+		public final long pushes; // heap pushes, in total
+		public final long pops; // heap pops, in total
+		public final Histogram.Summary latency; // nanoseconds per query
+		public final Histogram.Summary settledPerQuery;
+		public final Histogram.Summary searchesPerQuery;
+
+		QueryStats(long queries, long cacheHits, long notFound, long searches, long settled, long relaxed,
+				long pushes, long pops, Histogram.Summary latency, Histogram.Summary settledPerQuery,
+				Histogram.Summary searchesPerQuery) {
+			this.queries = queries;
+			this.cacheHits = cacheHits;
+			this.notFound = notFound;
+			this.searches = searches;
+			this.settled = settled;
+			this.relaxed = relaxed;
+			this.pushes = pushes;
+			this.pops = pops;
+			this.latency = latency;
+			this.settledPerQuery = settledPerQuery;
+			this.searchesPerQuery = searchesPerQuery;
+		}
+	}
+
+	/**
+	 * The numbers of one load phase
+	 */
+	public static final class PhaseStats {
+		public final long runs; // times the phase ran
+		public final long nanos; // total time
+		public final long lastNanos; // time of the last run
+		public final long items; // flights, airports or bytes handled, in total
+
+		PhaseStats(long runs, long nanos, long lastNanos, long items) {
+			this.runs = runs;
+			this.nanos = nanos;
+			this.lastNanos = lastNanos;
+			this.items = items;
+		}
+	}
+
+	/**
+	 * Everything recorded at one point in time
+	 */
+	public static final class Snapshot {
+		public final boolean enabled; // whether metrics were being recorded
+		public final Map<String, QueryStats> queries; // by query name
+		public final Map<String, PhaseStats> phases; // by phase name
+
+		Snapshot(boolean enabled, Map<String, QueryStats> queries, Map<String, PhaseStats> phases) {
+			this.enabled = enabled;
+			this.queries = Collections.unmodifiableMap(queries);
+			this.phases = Collections.unmodifiableMap(phases);
+		}
+
+		/**
+		 * Returns a report of the snapshot, one query or phase per block of lines
+		 */
+		@Override
+		public String toString() {
+			StringBuilder out = new StringBuilder();
+			out.append("performance metrics ").append(enabled ? "on" : "off").append('\n');
+			for (Map.Entry<String, QueryStats> e : queries.entrySet()) {
+				QueryStats q = e.getValue();
+				out.append(String.format(Locale.ROOT, "%s: %d queries, %d cache hits, %d without a route%n", e.getKey(),
+						q.queries, q.cacheHits, q.notFound));
+				if (q.queries == 0) continue;
+				Histogram.Summary l = q.latency;
+				out.append(String.format(Locale.ROOT,
+						"  latency us: mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", l.mean / 1e3,
+						l.p50 / 1e3, l.p90 / 1e3, l.p99 / 1e3, l.p999 / 1e3, l.max / 1e3));
+				out.append(String.format(Locale.ROOT,
+						"  per query: %.1f searches (max %d), %.1f settled (p99 %d), %.1f relaxed, %.1f pushes, %.1f pops%n",
+						(double) q.searches / q.queries, q.searchesPerQuery.max, (double) q.settled / q.queries,
+						q.settledPerQuery.p99, (double) q.relaxed / q.queries, (double) q.pushes / q.queries,
+						(double) q.pops / q.queries));
+			}
+			for (Map.Entry<String, PhaseStats> e : phases.entrySet()) {
+				PhaseStats p = e.getValue();
+				out.append(String.format(Locale.ROOT, "%s: %d runs, %.1f ms total, %.1f ms last, %d items%n", e.getKey(),
+						p.runs, p.nanos / 1e6, p.lastNanos / 1e6, p.items));
+			}
+			return out.toString();
+		}
+	}
+}
@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of route query results, keyed by origin, destination, number of routes and cost model. Every
+ * entry keeps its paths with the price and miles of each, so pricing a cached path doesn't look its
+ * flights up again. Lookups don't lock. The cache holds at most maxEntries entries, dropping the
+ * least recently used ones in bulk when it grows past that, and an entry older than the time to
+ * live is treated as missing.
+ *
+ * Changes to the flights only drop the entries they can affect: removing a flight drops the entries
+ * with a path over that leg, removing an airport the entries with a path through it, and adding a
+ * flight the entries whose worst cached route costs at least as much as the flight under the
+ * entry's cost model (a route that uses the new flight can't cost less than the flight). A result computed while a change was being made is not
+ * stored, see generation.
+ */
+public class RouteCache {
+
+	/**
+	 * What a query asked for
+	 */
+	public static final class Key {
+		public final String origin;
+		public final String destination;
+		public final int k; // number of routes asked for
+		public final CostModel model; // what the routes were ranked by
+
+		public Key(String origin, String destination, int k, CostModel model) {
+			this.origin = origin;
+			this.destination = destination;
+			this.k = k;
+			this.model = model;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key key = (Key) o;
+			return k == key.k && origin.equals(key.origin) && destination.equals(key.destination)
+					&& model.equals(key.model);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((origin.hashCode() * 31 + destination.hashCode()) * 31 + k) * 31 + model.hashCode();
+		}
+	}
+
+	/**
+	 * The result of one query
+	 */
+	private static final class Entry {
+		final List<Path> paths; // the routes, read-only
+		final double[] prices; // getFinalPrice of every route
+		final int[] miles; // getDistanceTraveled of every route
+		final double worstCost; // cost of the most expensive route, infinity with fewer than k routes
+		final Set<String> legs; // "origin>destination" of every flight on the routes
+		final Set<String> airports; // every airport on the routes
+		final long created; // System.nanoTime() when it was stored
+		volatile long lastUsed; // tick of the last lookup, for the LRU order
+
+		Entry(List<Path> paths, int k, double[] prices, int[] miles, long tick) {
+			this.paths = Collections.unmodifiableList(paths);
+			this.prices = prices;
+			this.miles = miles;
+			// with fewer than k routes any new route belongs in the answer, however expensive
+			double worst = paths.size() < k ? Double.POSITIVE_INFINITY : 0;
+			legs = new HashSet<String>();
+			airports = new HashSet<String>();
+			for (Path path : paths) {
+				worst = Math.max(worst, Double.isNaN(path.cost) ? Double.POSITIVE_INFINITY : path.cost);
+				airports.addAll(path.nodeList);
+				for (int i = 0; i + 1 < path.nodeList.size(); i++)
+					legs.add(leg(path.nodeList.get(i), path.nodeList.get(i + 1)));
+			}
+			this.worstCost = worst;
+			this.created = System.nanoTime();
+			this.lastUsed = tick;
+		}
+	}
+
+	private final int maxEntries; // most entries kept
+	private final long ttlNanos; // how long an entry stays valid, 0 for no limit
+	private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final ConcurrentHashMap<Path, Entry> owners = new ConcurrentHashMap<Path, Entry>(); // cached
+	                                                                  // path -> its entry, by identity
+	private final AtomicLong ticks = new AtomicLong(); // LRU clock
+	private final AtomicLong generation = new AtomicLong(); // bumped by every invalidation
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder(); // entries dropped for room or age
+	private final LongAdder invalidations = new LongAdder(); // entries dropped because of a change
+
+	/**
+	 * @param maxEntries - the most entries kept, at least 1
+	 * @param ttlMillis - how long an entry can be used, 0 to keep it until it's evicted or invalidated
+	 */
+	public RouteCache(int maxEntries, long ttlMillis) {
+		if (maxEntries < 1) throw new IllegalArgumentException("The cache needs room for at least one entry");
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlMillis * 1_000_000L;
+	}
+
+	private static String leg(String origin, String destination) {
+		return origin + ">" + destination;
+	}
+
+	/**
+	 * Returns the cached routes for a query, null if they aren't cached
+	 */
+	public List<Path> get(Key key) {
+		Entry entry = entries.get(key);
+		if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.created > ttlNanos) {
+			if (remove(key, entry)) evictions.increment();
+			entry = null;
+		}
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		entry.lastUsed = ticks.incrementAndGet();
+		hits.increment();
+		return entry.paths;
+	}
+
+	/**
+	 * Returns the number of the latest invalidation. Take it before computing a result and pass it to
+	 * put, so a result computed from data that changed meanwhile isn't cached
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * Caches the result of a query, unless the data changed since generation was taken
+	 * @param key - the query
+	 * @param paths - its routes
+	 * @param prices - the price of every route
+	 * @param miles - the miles of every route
+	 * @param generation - generation() from before the routes were computed
+	 */
+	public void put(Key key, List<Path> paths, double[] prices, int[] miles, long generation) {
+		Entry entry = new Entry(paths, key.k, prices, miles, ticks.incrementAndGet());
+		synchronized (this) { // no invalidation can run between the check and the insert
+			if (this.generation.get() != generation) return;
+			Entry old = entries.put(key, entry);
+			if (old != null) forget(old);
+			for (Path path : entry.paths) owners.put(path, entry);
+		}
+		if (entries.size() > maxEntries) evict();
+	}
+
+	/**
+	 * Returns the price of a cached path, NaN if the path isn't cached
+	 */
+	public double priceOf(Path path) {
+		Entry entry = owners.get(path);
+		int i = entry == null ? -1 : entry.paths.indexOf(path);
+		return i < 0 ? Double.NaN : entry.prices[i];
+	}
+
+	/**
+	 * Returns the miles of a cached path, -1 if the path isn't cached
+	 */
+	public int milesOf(Path path) {
+		Entry entry = owners.get(path);
+		int i = entry == null ? -1 : entry.paths.indexOf(path);
+		return i < 0 ? -1 : entry.miles[i];
+	}
+
+	/**
+	 * Drops the least recently used tenth of the entries, or more if that's not enough
+	 */
+	private synchronized void evict() {
+		int excess = entries.size() - maxEntries;
+		if (excess <= 0) return;
+		List<Map.Entry<Key, Entry>> all = new ArrayList<Map.Entry<Key, Entry>>(entries.entrySet());
+		all.sort((a, b) -> Long.compare(a.getValue().lastUsed, b.getValue().lastUsed));
+		int drop = Math.min(all.size(), Math.max(excess, maxEntries / 10));
+		for (int i = 0; i < drop; i++) {
+			if (remove(all.get(i).getKey(), all.get(i).getValue())) evictions.increment();
+		}
+	}
+
+	private boolean remove(Key key, Entry entry) {
+		if (!entries.remove(key, entry)) return false;
+		forget(entry);
+		return true;
+	}
+
+	private void forget(Entry entry) {
+		for (Path path : entry.paths) owners.remove(path, entry);
+	}
+
+	/**
+	 * A flight was added (or got cheaper)
+	 */
+	public synchronized void flightAdded(FlightInterface flight) {
+		generation.incrementAndGet();
+		for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+			if (e.getValue().worstCost >= e.getKey().model.cost(flight) && remove(e.getKey(), e.getValue())) {
+				invalidations.increment();
+			}
+		}
+	}
+
+	/**
+	 * A flight was removed (or got more expensive) between two airports
+	 */
+	public synchronized void flightRemoved(String origin, String destination) {
+		generation.incrementAndGet();
+		String leg = leg(origin, destination);
+		for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+			if (e.getValue().legs.contains(leg) && remove(e.getKey(), e.getValue())) invalidations.increment();
+		}
+	}
+
+	/**
+	 * An airport and all its flights were removed
+	 */
+	public synchronized void airportRemoved(String airport) {
+		generation.incrementAndGet();
+		for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+			if (e.getValue().airports.contains(airport) && remove(e.getKey(), e.getValue())) invalidations.increment();
+		}
+	}
+
+	/**
+	 * Drops every entry, for changes the cache can't see the details of
+	 */
+	public synchronized void clear() {
+		generation.incrementAndGet();
+		invalidations.add(entries.size());
+		entries.clear();
+		owners.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * Returns a one line description of the cache for reports
+	 */
+	public String summary() {
+		long h = getHits();
+		long m = getMisses();
+		return String.format("route cache: %d entries, %d hits, %d misses (%.1f%% hit rate), %d evicted, %d invalidated",
+				size(), h, m, h + m == 0 ? 0 : 100.0 * h / (h + m), getEvictions(), getInvalidations());
+	}
+}
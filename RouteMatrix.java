@@ -0,0 +1,89 @@
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Route costs between whole sets of origins and destinations of a FlightNetwork. Every origin gets
+ * one search to every airport, shared by all the destinations, and the origins are searched in
+ * parallel on the fork-join pool, each thread with its own scratch. stream hands each row to a sink
+ * as soon as its search is done, so only the rows being computed are in memory and a matrix too
+ * big to hold can be written out as it is made; compute collects the rows into a double[][].
+ * When the network comes with an all-pairs table for the value() model, rows are read from it
+ * instead of searched.
+ */
+public class RouteMatrix {
+
+	/**
+	 * Receives the rows of a matrix. Rows arrive in any order but one at a time, so a sink doesn't
+	 * have to be thread-safe
+	 */
+	public interface RowSink {
+		/**
+		 * @param index - position of the origin in the origin list
+		 * @param origin - the origin airport
+		 * @param costs - the cost to every destination, in the order of the destination list,
+		 *              infinity where unreachable. A new array for every row
+		 */
+		void accept(int index, String origin, double[] costs);
+	}
+
+	private final FlightNetwork net; // the network searched
+	private final CostModel model; // what the costs are
+	private final AllPairsTable table; // table of net for value(), or null
+
+	public RouteMatrix(FlightNetwork net, CostModel model) {
+		this(net, model, null);
+	}
+
+	/**
+	 * @param net - the network to search
+	 * @param model - what the costs are
+	 * @param table - an all-pairs table to read value() rows from, used only if it was built for net
+	 */
+	public RouteMatrix(FlightNetwork net, CostModel model, AllPairsTable table) {
+		this.net = net;
+		this.model = model;
+		this.table = table != null && table.getNetwork() == net && model.equals(CostModel.VALUE) ? table : null;
+	}
+
+	/**
+	 * Computes the whole matrix
+	 * @param origins - the origin airports
+	 * @param destinations - the destination airports
+	 * @return - the cost from origin i to destination j at [i][j], infinity if unreachable
+	 */
+	public double[][] compute(List<String> origins, List<String> destinations) {
+		double[][] matrix = new double[origins.size()][];
+		stream(origins, destinations, (index, origin, costs) -> matrix[index] = costs);
+		return matrix;
+	}
+
+	/**
+	 * Computes the matrix row by row, handing every row to the sink as soon as it is done. Returns
+	 * once every row has been handed over
+	 * @param origins - the origin airports
+	 * @param destinations - the destination airports
+	 * @param sink - receives the rows
+	 */
+	public void stream(List<String> origins, List<String> destinations, RowSink sink) {
+		int[] sources = new int[origins.size()];
+		int[] targets = new int[destinations.size()];
+		for (int i = 0; i < sources.length; i++) sources[i] = net.requireIndex(origins.get(i)); // throws before any search
+		for (int j = 0; j < targets.length; j++) targets[j] = net.requireIndex(destinations.get(j));
+		double[] weights = table == null ? model.weights(net) : null;
+		Object lock = new Object(); // hands rows over one at a time
+		IntStream.range(0, sources.length).parallel().forEach(i -> {
+			double[] row = new double[targets.length];
+			if (table != null) {
+				int base = sources[i] * net.getNodeCount();
+				for (int j = 0; j < targets.length; j++) row[j] = table.cost[base + targets[j]];
+			} else {
+				SearchScratch scratch = SearchScratch.local(); // the scratch of whichever thread runs the row
+				net.settleAll(sources[i], weights, scratch);
+				for (int j = 0; j < targets.length; j++) row[j] = scratch.distance(targets[j]);
+			}
+			synchronized (lock) {
+				sink.accept(i, origins.get(i), row);
+			}
+		});
+	}
+}
@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Answers route queries from an immutable snapshot of the flight network, so any number of
+ * threads can query without locks while the data is being changed. A snapshot bundles the
+ * FlightNetwork with the indexes built for it (contraction hierarchy, all-pairs table). Writers
+ * build the next snapshot off to the side and publish it with a single atomic swap
+ * (copy-on-write); a query reads the current snapshot once and uses it to the end, so it never
+ * sees half of an update.
+ */
+public class RouteQueryEngine {
+
+	/**
+	 * A flight network and the indexes built for it. Never changed after construction
+	 */
+	public static class Snapshot {
+		public final FlightNetwork network; // the airports and flights
+		public final ContractionHierarchy hierarchy; // null when hierarchies are turned off
+		public final AllPairsTable table; // null when the network is over the all-pairs threshold
+
+		public Snapshot(FlightNetwork network, ContractionHierarchy hierarchy, AllPairsTable table) {
+			this.network = network;
+			this.hierarchy = hierarchy;
+			this.table = table;
+		}
+	}
+
+	private final AtomicReference<Snapshot> current = new AtomicReference<Snapshot>(
+			new Snapshot(new FlightNetwork(new ArrayList<String>(), new ArrayList<FlightInterface>()), null, null));
+	private volatile boolean useHierarchy = false; // build a contraction hierarchy for every snapshot
+	private volatile int allPairsThreshold = 0; // most airports an all-pairs table is built for
+	private volatile SearchMode searchMode = SearchMode.DIJKSTRA; // search used without an index
+
+	/**
+	 * Returns the snapshot queries currently run against
+	 */
+	public Snapshot snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Builds the indexes for a network and makes it the current snapshot
+	 * @param network - the new network
+	 */
+	public synchronized void publish(FlightNetwork network) {
+		publish(network, null);
+	}
+
+	/**
+	 * Builds the indexes for a network and makes it the current snapshot, taking the all-pairs table
+	 * from an earlier run (see BinarySnapshot) instead of computing it again
+	 * @param network - the new network
+	 * @param table - a table for a network with the same airports and flights, or null
+	 */
+	public synchronized void publish(FlightNetwork network, AllPairsTable table) {
+		ContractionHierarchy hierarchy = useHierarchy ? new ContractionHierarchy(network) : null;
+		if (network.getNodeCount() > allPairsThreshold || allPairsThreshold <= 0) {
+			table = null;
+		} else if (table == null || table.getNetwork().getNodeCount() != network.getNodeCount()
+				|| table.getNetwork().getEdgeCount() != network.getEdgeCount()) {
+			table = new AllPairsTable(network);
+		}
+		current.set(new Snapshot(network, hierarchy, table));
+	}
+
+	/**
+	 * Applies a change to a copy of the current network and publishes the result. Writers are
+	 * serialized, readers keep using the old snapshot until the new one is published
+	 * @param change - makes the next network from the current one
+	 */
+	public synchronized void update(UnaryOperator<FlightNetwork> change) {
+		publish(change.apply(current.get().network));
+	}
+
+	/**
+	 * Publishes a copy of the current network with one more flight (and its airports)
+	 */
+	public void addFlight(FlightInterface flight) {
+		update(network -> {
+			List<String> airports = new ArrayList<String>(network.getAirports());
+			if (network.indexOf(flight.getOriginAirport()) < 0) airports.add(flight.getOriginAirport());
+			if (network.indexOf(flight.getDestinationAirport()) < 0 && !flight.getDestinationAirport().equals(flight.getOriginAirport()))
+				airports.add(flight.getDestinationAirport());
+			List<FlightInterface> flights = network.getFlights();
+			flights.add(flight);
+			return new FlightNetwork(airports, flights);
+		});
+	}
+
+	/**
+	 * Publishes a copy of the current network without the flights between two airports
+	 */
+	public void removeFlight(String pred, String succ) {
+		update(network -> {
+			List<FlightInterface> flights = network.getFlights();
+			flights.removeIf(f -> f.getOriginAirport().equals(pred) && f.getDestinationAirport().equals(succ));
+			return new FlightNetwork(network.getAirports(), flights);
+		});
+	}
+
+	/**
+	 * Turns building a contraction hierarchy for every snapshot on or off. Rebuilds the current one
+	 */
+	public void setUseHierarchy(boolean useHierarchy) {
+		this.useHierarchy = useHierarchy;
+		update(network -> network);
+	}
+
+	/**
+	 * Sets the most airports an all-pairs table is built for, 0 for never. Thresholds above
+	 * AllPairsTable.MAX_AIRPORTS, the most a table can hold, are lowered to it. Rebuilds the current
+	 * snapshot
+	 */
+	public void setAllPairsThreshold(int allPairsThreshold) {
+		this.allPairsThreshold = Math.min(allPairsThreshold, AllPairsTable.MAX_AIRPORTS);
+		update(network -> network);
+	}
+
+	/**
+	 * Sets the search used for single routes when the snapshot has no index for them. ALT needs a
+	 * landmark index the snapshots don't carry and is answered with plain Dijkstra
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		this.searchMode = searchMode;
+	}
+
+	/**
+	 * Returns the cheapest path between two airports, from the all-pairs table or the contraction
+	 * hierarchy when the snapshot has one, else by searching the snapshot's network
+	 */
+	public Path shortestPath(String start, String end) {
+		return shortestPath(current.get(), start, end);
+	}
+
+	private Path shortestPath(Snapshot snap, String start, String end) {
+		if (snap.table != null) return snap.table.shortestPath(start, end);
+		if (snap.hierarchy != null) return snap.hierarchy.query(start, end);
+		if (searchMode == SearchMode.BIDIRECTIONAL) return snap.network.shortestPathBidirectional(start, end);
+		return snap.network.shortestPath(start, end);
+	}
+
+	/**
+	 * Returns the path between two airports that costs least under a cost model. The indexes of the
+	 * snapshot are built for value(), so only CostModel.VALUE uses them; other models search the
+	 * snapshot's network with their own weights
+	 */
+	public Path shortestPath(String start, String end, CostModel model) {
+		if (model.equals(CostModel.VALUE)) return shortestPath(start, end);
+		return current.get().network.shortestPath(start, end, model);
+	}
+
+	/**
+	 * Returns the cost of the cheapest path between two airports
+	 */
+	public double shortestPathCost(String start, String end) {
+		Snapshot snap = current.get();
+		if (snap.table != null) return snap.table.shortestPathCost(start, end);
+		return shortestPath(snap, start, end).cost;
+	}
+
+	/**
+	 * Returns up to k of the cheapest loopless paths between two airports, cheapest first
+	 */
+	public List<Path> shortestPaths(String start, String end, int k) {
+		if (k == 1) {
+			List<Path> paths = new ArrayList<Path>();
+			paths.add(shortestPath(start, end));
+			return paths;
+		}
+		return new KShortestPaths(current.get().network).find(start, end, k);
+	}
+
+	/**
+	 * Returns up to k of the loopless paths between two airports that cost least under a cost model,
+	 * cheapest first
+	 */
+	public List<Path> shortestPaths(String start, String end, int k, CostModel model) {
+		if (model.equals(CostModel.VALUE)) return shortestPaths(start, end, k);
+		if (k == 1) {
+			List<Path> paths = new ArrayList<Path>();
+			paths.add(shortestPath(start, end, model));
+			return paths;
+		}
+		return new KShortestPaths(current.get().network, model).find(start, end, k);
+	}
+
+	/**
+	 * Returns the cheapest flight between two airports in the current snapshot
+	 */
+	public FlightInterface getFlight(String pred, String succ) {
+		return current.get().network.getFlight(pred, succ);
+	}
+}
@@ -0,0 +1,139 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Loads synthetic networks of growing size (see NetworkGenerator) through the same
+ * MappedFlightReader, BackendBD and Graph pipeline as the app, and reports for every size how long
+ * the file took to write and load, how much heap the loaded backend holds, and the latency
+ * percentiles of route queries between random airports. A size that runs out of heap is reported and ends the
+ * run, since bigger ones would too.
+ *
+ * Run with: java ScaleTest [options]
+ *   -sizes 10000,100000,1000000   flight counts to test
+ *   -seed 1                       generator seed
+ *   -queries 500                  route queries timed per size
+ *   -dir path                     where the csv files go, a temporary directory if not given
+ *   -keep                         keeps the csv files instead of deleting them
+ */
+public class ScaleTest {
+
+	public static void main(String[] args) throws IOException {
+		long[] sizes = { 10_000, 100_000, 1_000_000 };
+		long seed = 1;
+		int queries = 500;
+		File dir = null;
+		boolean keep = false;
+		for (int a = 0; a < args.length; a++) {
+			switch (args[a]) {
+				case "-sizes": sizes = Arrays.stream(args[++a].split(",")).mapToLong(Long::parseLong).toArray(); break;
+				case "-seed": seed = Long.parseLong(args[++a]); break;
+				case "-queries": queries = Integer.parseInt(args[++a]); break;
+				case "-dir": dir = new File(args[++a]); break;
+				case "-keep": keep = true; break;
+				default: throw new IllegalArgumentException("Unknown option " + args[a]);
+			}
+		}
+		boolean temporary = dir == null;
+		if (temporary) dir = Files.createTempDirectory("flight-scale").toFile();
+
+		System.out.printf(Locale.ROOT, "%12s %10s %10s %9s %9s %10s %10s %10s %10s %10s %8s%n", "flights", "airports",
+				"file MB", "write s", "load s", "heap MB", "p50 us", "p90 us", "p99 us", "max us", "no route");
+		try {
+			for (long size : sizes) {
+				File csv = new File(dir, "synthetic-" + size + "-" + seed + ".csv");
+				try {
+					if (!run(size, seed, queries, csv)) break;
+				} finally {
+					if (!keep) csv.delete();
+				}
+			}
+		} finally {
+			if (temporary && !keep) dir.delete();
+		}
+	}
+
+	/**
+	 * Writes, loads and queries one size, printing its row
+	 * @return - false if it ran out of heap
+	 */
+	private static boolean run(long size, long seed, int queries, File csv) throws IOException {
+		long start = System.nanoTime();
+		new NetworkGenerator(seed).write(size, csv);
+		double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+		long heapBefore = usedHeap();
+		Graph<String, FlightInterface> graph = new Graph<String, FlightInterface>();
+		BackendBD backend = new BackendBD(graph, new MappedFlightReader());
+		backend.setRouteCache(0, 0); // every query searches
+		double loadSeconds;
+		long heap;
+		try {
+			start = System.nanoTime();
+			backend.loadData(csv.getPath());
+			loadSeconds = (System.nanoTime() - start) / 1e9;
+			heap = usedHeap() - heapBefore;
+		} catch (OutOfMemoryError e) {
+			backend = null;
+			graph = null;
+			System.out.printf(Locale.ROOT, "%12d out of memory loading %.0f MB, max heap %d MB%n", size,
+					csv.length() / 1e6, Runtime.getRuntime().maxMemory() >> 20);
+			return false;
+		}
+
+		FlightNetwork net = graph.getNetwork();
+		Random random = new Random(seed);
+		String[][] pairs = new String[queries][];
+		for (int q = 0; q < queries; q++) {
+			pairs[q] = new String[] { net.nameOf(random.nextInt(net.getNodeCount())),
+					net.nameOf(random.nextInt(net.getNodeCount())) };
+		}
+		for (int q = 0; q < Math.min(queries, 50); q++) query(backend, pairs[q]); // lets the JIT compile the search
+		long[] nanos = new long[queries];
+		int unreachable = 0;
+		for (int q = 0; q < queries; q++) {
+			start = System.nanoTime();
+			if (!query(backend, pairs[q])) unreachable++;
+			nanos[q] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		System.out.printf(Locale.ROOT, "%12d %10d %10.1f %9.2f %9.2f %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n", size,
+				net.getNodeCount(), csv.length() / 1e6, writeSeconds, loadSeconds, heap / 1e6, percentile(nanos, 50) / 1e3,
+				percentile(nanos, 90) / 1e3, percentile(nanos, 99) / 1e3, nanos[queries - 1] / 1e3, unreachable);
+		return true;
+	}
+
+	/**
+	 * Asks the backend for the cheapest route between a pair
+	 * @return - false if there is none
+	 */
+	private static boolean query(BackendBD backend, String[] pair) {
+		try {
+			backend.getShortestPath(pair[0], pair[1]);
+			return true;
+		} catch (NoSuchElementException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the nearest-rank percentile of sorted values
+	 */
+	private static long percentile(long[] sorted, double percent) {
+		int rank = (int) Math.ceil(percent / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * Returns the heap in use after a collection
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,96 @@
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * A flight with a departure and an arrival time, read from the extended csv schema
+ * origin,destination,price,miles,departure,arrival. Times are seconds since the epoch (UTC). Two
+ * departures of the same route at different times are different flights, so both are kept as
+ * parallel edges of the graph, and the Timetable routes over them.
+ */
+public class ScheduledFlight extends Flight {
+    private final long departure; // seconds since the epoch
+    private final long arrival; // seconds since the epoch, not before the departure
+
+    public ScheduledFlight(AirportInterface originAirport, AirportInterface destinationAirport, double price,
+                           double miles, long departure, long arrival) {
+        super(originAirport, destinationAirport, price, miles);
+        if (arrival < departure) {
+            throw new IllegalArgumentException("A flight can't arrive before it departs");
+        }
+        this.departure = departure;
+        this.arrival = arrival;
+    }
+
+    /**
+     * Returns the departure time in seconds since the epoch
+     */
+    public long getDeparture() {
+        return departure;
+    }
+
+    /**
+     * Returns the arrival time in seconds since the epoch
+     */
+    public long getArrival() {
+        return arrival;
+    }
+
+    /**
+     * Parses a time column: seconds since the epoch, an ISO date-time with an offset
+     * (2024-05-01T08:30-05:00) or without one (2024-05-01T08:30, taken as UTC)
+     * @return - the time in seconds since the epoch
+     * @throws DateTimeParseException - if the text is none of these
+     */
+    public static long parseTime(String text) {
+        text = text.trim();
+        boolean number = !text.isEmpty();
+        for (int i = 0; i < text.length() && number; i++) {
+            char c = text.charAt(i);
+            number = (c >= '0' && c <= '9') || (i == 0 && c == '-' && text.length() > 1);
+        }
+        if (number) {
+            return Long.parseLong(text);
+        }
+        try {
+            return OffsetDateTime.parse(text).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(text).toEpochSecond(ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * Makes the flight of a csv row: a ScheduledFlight when the fifth and sixth columns are times, a
+     * plain Flight when there are no such columns or they hold something else
+     * @param columns - the columns of the row, the first four already parsed into the arguments
+     * @throws IllegalArgumentException - if the times parse but the arrival is before the departure
+     */
+    static Flight fromColumns(AirportInterface origin, AirportInterface destination, double price, double miles,
+                              String[] columns) {
+        if (columns.length >= 6) {
+            long departure, arrival;
+            try {
+                departure = parseTime(columns[4]);
+                arrival = parseTime(columns[5]);
+            } catch (RuntimeException e) {
+                return new Flight(origin, destination, price, miles); // extra columns that aren't a schedule
+            }
+            return new ScheduledFlight(origin, destination, price, miles, departure, arrival);
+        }
+        return new Flight(origin, destination, price, miles);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) return false;
+        ScheduledFlight flight = (ScheduledFlight) o;
+        return departure == flight.departure && arrival == flight.arrival;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), departure, arrival);
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * The ways Graph can answer a point-to-point shortest path query. All of them return a cheapest
+ * path, they only differ in how much of the graph they look at to find it
+ */
+public enum SearchMode {
+	DIJKSTRA, // one search forward from the start, stopped when the destination is settled
+	BIDIRECTIONAL, // searches forward from the start and backward from the destination until they meet
+	ALT // A* from the start, estimating the rest of the way with distances to landmark airports (see LandmarkIndex)
+}
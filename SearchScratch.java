@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * Working arrays for one shortest path search over int node ids: tentative distance, predecessor
+ * and settled flags plus the indexed heap. Entries are tagged with the number of the search that
+ * wrote them, so starting a new search is O(1) instead of clearing every array. Each thread keeps
+ * its own scratch (see local()), which lets searches run on many threads without allocating.
+ * The scratch also counts the work of all its searches (searches, relaxed edges, heap pushes and
+ * pops). The counts are plain fields of a per-thread object and are never reset, so they cost next
+ * to nothing; PerformanceMetrics reads them before and after a query to get the work it did.
+ */
+public class SearchScratch {
+
+	private static final ThreadLocal<SearchScratch> LOCAL = ThreadLocal.withInitial(SearchScratch::new);
+	private static final ThreadLocal<SearchScratch> LOCAL_REVERSE = ThreadLocal.withInitial(SearchScratch::new);
+
+	double[] dist = new double[0]; // tentative distance of every reached node
+	int[] pred = new int[0]; // predecessor of every reached node, its meaning is up to the search
+	private int[] reached = new int[0]; // search number that last reached each node
+	private int[] settled = new int[0]; // search number that last settled each node
+	private int epoch = 0; // number of the current search
+	final IndexedMinHeap heap = new IndexedMinHeap(16); // nodes reached but not yet settled
+	long searches; // searches started with reset
+	long relaxed; // paths offered to relax, one per edge looked at
+	long pushes; // nodes queued on the heap the first time they were reached
+	long pops; // nodes settled
+
+	/**
+	 * Returns the scratch of the calling thread
+	 */
+	public static SearchScratch local() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Returns a second scratch of the calling thread, for searches that run two at once
+	 */
+	public static SearchScratch localReverse() {
+		return LOCAL_REVERSE.get();
+	}
+
+	/**
+	 * Starts a new search over node ids 0..nodeCount-1
+	 * @param nodeCount - the number of node ids the search can touch
+	 */
+	public void reset(int nodeCount) {
+		if (dist.length < nodeCount) {
+			int size = Math.max(nodeCount, dist.length * 3 / 2);
+			dist = Arrays.copyOf(dist, size);
+			pred = Arrays.copyOf(pred, size);
+			reached = Arrays.copyOf(reached, size);
+			settled = Arrays.copyOf(settled, size);
+			heap.ensureCapacity(size);
+		}
+		heap.clear();
+		searches++;
+		if (++epoch == Integer.MAX_VALUE) { // the tags are about to wrap, forget all of them
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			epoch = 1;
+		}
+	}
+
+	public boolean isReached(int node) {
+		return reached[node] == epoch;
+	}
+
+	public boolean isSettled(int node) {
+		return settled[node] == epoch;
+	}
+
+	/**
+	 * Returns the distance found to the node so far, infinity if the search has not reached it
+	 */
+	public double distance(int node) {
+		return reached[node] == epoch ? dist[node] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the predecessor recorded for the node, -1 if it has none
+	 */
+	public int predecessor(int node) {
+		return reached[node] == epoch ? pred[node] : -1;
+	}
+
+	/**
+	 * Offers a path to the node. Queues it (or lowers its queued distance) when the path is shorter
+	 * than the best one known and the node is not settled yet
+	 * @param node - the node reached
+	 * @param distance - the length of the path to it
+	 * @param predecessor - what to remember as the way the node was reached
+	 * @return - true if the path was the best one so far
+	 */
+	public boolean relax(int node, double distance, int predecessor) {
+		return relax(node, distance, predecessor, distance);
+	}
+
+	/**
+	 * Same as relax, but queues the node by a separate key (for example distance plus an A* estimate)
+	 */
+	public boolean relax(int node, double distance, int predecessor, double key) {
+		relaxed++;
+		if (reached[node] == epoch) {
+			if (distance >= dist[node] || settled[node] == epoch) return false;
+		} else {
+			reached[node] = epoch;
+			pushes++;
+		}
+		dist[node] = distance;
+		pred[node] = predecessor;
+		heap.insertOrDecrease(node, key);
+		return true;
+	}
+
+	/**
+	 * Removes the closest queued node from the heap and marks it settled
+	 */
+	public int settleNext() {
+		int node = heap.poll();
+		pops++;
+		settled[node] = epoch;
+		return node;
+	}
+}
@@ -0,0 +1,77 @@
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * The result of one search from an origin to every airport of a FlightNetwork: a dense array of
+ * costs and one of predecessor edges, indexed by node id. Costs to any number of destinations are
+ * array reads, and the path to one is a walk back along the predecessors.
+ */
+public class ShortestPathTree {
+
+	private final FlightNetwork net; // the network searched
+	private final int source; // node id of the origin
+	private final double[] cost; // cost from the origin to every node, infinity if unreachable
+	private final int[] predEdge; // last edge on the path to every node, -1 for the origin and unreachable ones
+
+	ShortestPathTree(FlightNetwork net, int source, double[] cost, int[] predEdge) {
+		this.net = net;
+		this.source = source;
+		this.cost = cost;
+		this.predEdge = predEdge;
+	}
+
+	/**
+	 * Returns the airport the tree was searched from
+	 */
+	public String getOrigin() {
+		return net.nameOf(source);
+	}
+
+	/**
+	 * Returns the network the tree was searched in, whose node ids index the arrays
+	 */
+	public FlightNetwork getNetwork() {
+		return net;
+	}
+
+	/**
+	 * Returns the cost to every node id, infinity where unreachable. The array is shared, don't
+	 * change it
+	 */
+	public double[] getCosts() {
+		return cost;
+	}
+
+	/**
+	 * Returns the last edge id on the path to every node id, -1 for the origin and where
+	 * unreachable. The array is shared, don't change it
+	 */
+	public int[] getPredecessorEdges() {
+		return predEdge;
+	}
+
+	/**
+	 * Returns the cost of the cheapest path to an airport, infinity if it can't be reached
+	 */
+	public double costTo(String airport) {
+		return cost[net.requireIndex(airport)];
+	}
+
+	/**
+	 * Returns the cheapest path to an airport with its cost. Throws if it can't be reached
+	 */
+	public Path pathTo(String airport) {
+		int target = net.requireIndex(airport);
+		if (cost[target] == Double.POSITIVE_INFINITY) {
+			throw new NoSuchElementException("There is not path for the start and end");
+		}
+		LinkedList<String> nodes = new LinkedList<String>();
+		LinkedList<FlightInterface> flights = new LinkedList<FlightInterface>();
+		nodes.addFirst(net.nameOf(target));
+		for (int v = target; predEdge[v] >= 0; v = net.origins[predEdge[v]]) {
+			flights.addFirst(net.flightOf(predEdge[v]));
+			nodes.addFirst(net.nameOf(net.origins[predEdge[v]]));
+		}
+		return new Path(nodes, cost[target], flights);
+	}
+}
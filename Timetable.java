@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Schedule-aware routing with the Connection Scan Algorithm. Every ScheduledFlight of a
+ * FlightNetwork is a connection, and the connections are kept in primitive arrays sorted by
+ * departure time. An earliest-arrival query is then one forward scan over the array from the
+ * departure time, and a profile query (the best journey for every departure in a window) one
+ * backward scan, with no priority queue. A connection can only be taken at an airport the traveller
+ * reached by its departure plus the airport's minimum connection time; the first flight of a
+ * journey needs no connection time. Flights without times are not part of the timetable.
+ */
+public class Timetable {
+
+	/**
+	 * A journey through the timetable. Its cost is the total price of its flights
+	 */
+	public static class Journey extends Path {
+		public final long departure; // departure of the first flight, seconds since the epoch
+		public final long arrival; // arrival of the last flight, seconds since the epoch
+
+		public Journey(List<String> nodeList, double cost, List<FlightInterface> flights, long departure, long arrival) {
+			super(nodeList, cost, flights);
+			this.departure = departure;
+			this.arrival = arrival;
+		}
+
+		/**
+		 * Returns the time from the first departure to the last arrival, in seconds
+		 */
+		public long getDuration() {
+			return arrival - departure;
+		}
+	}
+
+	private final FlightNetwork net; // the network whose node ids the stops are
+	private final int[] depStop; // origin node of every connection, by departure time
+	private final int[] arrStop; // destination node of every connection
+	private final long[] depTime; // departure of every connection, ascending
+	private final long[] arrTime; // arrival of every connection
+	private final int[] edge; // edge id in net of every connection
+	private final long[] minConnection; // minimum connection time of every node, in seconds
+
+	/**
+	 * Builds the timetable of a network with one minimum connection time for every airport
+	 * @param net - the network, whose ScheduledFlights become the connections
+	 * @param minConnectionSeconds - time needed between arriving at an airport and flying on
+	 */
+	public Timetable(FlightNetwork net, long minConnectionSeconds) {
+		this(net, minConnectionSeconds, Collections.<String, Long>emptyMap());
+	}
+
+	/**
+	 * Builds the timetable of a network with minimum connection times for some airports
+	 * @param net - the network, whose ScheduledFlights become the connections
+	 * @param minConnectionSeconds - connection time of the airports that aren't in the map
+	 * @param perAirport - connection time in seconds by airport code
+	 */
+	public Timetable(FlightNetwork net, long minConnectionSeconds, Map<String, Long> perAirport) {
+		this.net = net;
+		minConnection = new long[net.getNodeCount()];
+		Arrays.fill(minConnection, minConnectionSeconds);
+		for (Map.Entry<String, Long> e : perAirport.entrySet()) {
+			int v = net.indexOf(e.getKey());
+			if (v >= 0) minConnection[v] = e.getValue();
+		}
+		int[] order = IntStream.range(0, net.getEdgeCount()).filter(e -> net.flights[e] instanceof ScheduledFlight)
+				.boxed().sorted((a, b) -> {
+					ScheduledFlight x = (ScheduledFlight) net.flights[a];
+					ScheduledFlight y = (ScheduledFlight) net.flights[b];
+					int c = Long.compare(x.getDeparture(), y.getDeparture());
+					return c != 0 ? c : Long.compare(x.getArrival(), y.getArrival());
+				}).mapToInt(Integer::intValue).toArray();
+		int m = order.length;
+		depStop = new int[m];
+		arrStop = new int[m];
+		depTime = new long[m];
+		arrTime = new long[m];
+		edge = order;
+		for (int c = 0; c < m; c++) {
+			ScheduledFlight f = (ScheduledFlight) net.flights[order[c]];
+			depStop[c] = net.origins[order[c]];
+			arrStop[c] = net.targets[order[c]];
+			depTime[c] = f.getDeparture();
+			arrTime[c] = f.getArrival();
+		}
+	}
+
+	/**
+	 * Returns the network the timetable was built from
+	 */
+	public FlightNetwork getNetwork() {
+		return net;
+	}
+
+	/**
+	 * Returns the number of connections (scheduled flights)
+	 */
+	public int getConnectionCount() {
+		return depTime.length;
+	}
+
+	/**
+	 * Finds the journey that arrives first, leaving the start no earlier than a given time. Of the
+	 * journeys arriving at the same time the one found first in departure order is kept
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @param departAfter - the earliest departure, seconds since the epoch
+	 * @return - the journey with its times and total price
+	 */
+	public Journey earliestArrival(String start, String end, long departAfter) {
+		int source = net.requireIndex(start);
+		int target = net.requireIndex(end);
+		int n = net.getNodeCount();
+		long[] arrival = new long[n]; // earliest arrival at every node found so far
+		long[] ready = new long[n]; // earliest departure from every node, arrival plus connection time
+		int[] inConnection = new int[n]; // connection of that earliest arrival
+		Arrays.fill(arrival, Long.MAX_VALUE);
+		Arrays.fill(ready, Long.MAX_VALUE);
+		Arrays.fill(inConnection, -1);
+		arrival[source] = departAfter;
+		ready[source] = departAfter;
+		for (int c = firstDeparting(departAfter); c < depTime.length; c++) {
+			if (depTime[c] >= arrival[target]) break; // every later connection arrives later still
+			int v = arrStop[c];
+			if (ready[depStop[c]] <= depTime[c] && arrTime[c] < arrival[v]) {
+				arrival[v] = arrTime[c];
+				ready[v] = arrTime[c] + minConnection[v];
+				inConnection[v] = c;
+			}
+		}
+		if (source != target && inConnection[target] < 0) {
+			throw new NoSuchElementException("There is not path for the start and end");
+		}
+		List<Integer> legs = new ArrayList<Integer>();
+		for (int v = target; inConnection[v] >= 0 && v != source; v = depStop[inConnection[v]]) {
+			legs.add(inConnection[v]);
+		}
+		Collections.reverse(legs);
+		return toJourney(source, legs, departAfter);
+	}
+
+	/**
+	 * Finds the profile of a pair of airports: for every departure from the start in a window, the
+	 * journey that arrives first. Journeys that another one in the window leaves no earlier than and
+	 * arrives no later than are left out, so later departures always arrive later. Connecting
+	 * flights may leave after the window
+	 * @param start - the starting airport
+	 * @param end - the destination airport
+	 * @param from - the start of the departure window, seconds since the epoch
+	 * @param to - the end of the departure window, seconds since the epoch
+	 * @return - the journeys, by departure time
+	 */
+	public List<Journey> profile(String start, String end, long from, long to) {
+		int source = net.requireIndex(start);
+		int target = net.requireIndex(end);
+		if (source == target) throw new IllegalArgumentException("The start and end are the same airport");
+		// every node keeps a list of (departure, arrival at the target) pairs, ascending in both;
+		// the connections are scanned backward, so a new pair always goes first
+		int[] head = new int[net.getNodeCount()];
+		Arrays.fill(head, -1);
+		int capacity = 64;
+		long[] pairDep = new long[capacity];
+		long[] pairArr = new long[capacity];
+		int[] pairConnection = new int[capacity]; // first connection of the journey
+		int[] pairVia = new int[capacity]; // pair the journey goes on with, -1 if it arrived
+		int[] pairNext = new int[capacity]; // next pair of the same node, -1 at the end
+		int pairs = 0;
+		int first = firstDeparting(from);
+		for (int c = depTime.length - 1; c >= first; c--) {
+			int u = depStop[c];
+			int v = arrStop[c];
+			if (u == target || (u == source && depTime[c] > to)) continue; // the start only departs in the window
+			long reach; // earliest arrival at the target when taking c
+			int via = -1;
+			if (v == target) {
+				reach = arrTime[c];
+			} else {
+				long transfer = arrTime[c] + minConnection[v];
+				via = head[v];
+				while (via >= 0 && pairDep[via] < transfer) via = pairNext[via];
+				if (via < 0) continue; // nothing leaves v in time
+				reach = pairArr[via];
+			}
+			if (head[u] >= 0 && pairArr[head[u]] <= reach) continue; // a later departure arrives as early
+			if (pairs == capacity) {
+				capacity *= 2;
+				pairDep = Arrays.copyOf(pairDep, capacity);
+				pairArr = Arrays.copyOf(pairArr, capacity);
+				pairConnection = Arrays.copyOf(pairConnection, capacity);
+				pairVia = Arrays.copyOf(pairVia, capacity);
+				pairNext = Arrays.copyOf(pairNext, capacity);
+			}
+			pairDep[pairs] = depTime[c];
+			pairArr[pairs] = reach;
+			pairConnection[pairs] = c;
+			pairVia[pairs] = via;
+			// a pair leaving at the same time but arriving later is dominated, it drops out of the list
+			// (pairs that go on with it keep their link to it)
+			pairNext[pairs] = head[u] >= 0 && pairDep[head[u]] == depTime[c] ? pairNext[head[u]] : head[u];
+			head[u] = pairs++;
+		}
+		List<Journey> journeys = new ArrayList<Journey>();
+		for (int p = head[source]; p >= 0 && pairDep[p] <= to; p = pairNext[p]) {
+			List<Integer> legs = new ArrayList<Integer>();
+			for (int q = p; q >= 0; q = pairVia[q]) legs.add(pairConnection[q]);
+			journeys.add(toJourney(source, legs, pairDep[p]));
+		}
+		return journeys;
+	}
+
+	/**
+	 * Returns the first connection that departs at or after a time
+	 */
+	private int firstDeparting(long time) {
+		int low = 0;
+		int high = depTime.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (depTime[mid] < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Makes the journey of a list of connections, or the empty journey at the start
+	 */
+	private Journey toJourney(int source, List<Integer> legs, long departAfter) {
+		List<String> nodes = new ArrayList<String>();
+		List<FlightInterface> flights = new ArrayList<FlightInterface>();
+		nodes.add(net.nameOf(source));
+		double price = 0;
+		for (int c : legs) {
+			FlightInterface f = net.flightOf(edge[c]);
+			flights.add(f);
+			nodes.add(net.nameOf(arrStop[c]));
+			price += f.getPrice();
+		}
+		if (legs.isEmpty()) return new Journey(nodes, 0, flights, departAfter, departAfter);
+		return new Journey(nodes, price, flights, depTime[legs.get(0)], arrTime[legs.get(legs.size() - 1)]);
+	}
+}